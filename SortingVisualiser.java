@@ -1,7 +1,18 @@
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.VolatileImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 import javax.swing.*;
 
@@ -17,14 +28,99 @@ import javax.swing.*;
  * Run:
  * java -cp ".;flatlaf.jar" SortingVisualiser
  *
+ * Optional Vector API kernels (JDK 16+), used by the raw sorts when loaded:
+ * javac --add-modules jdk.incubator.vector -cp . VectorSortKernel.java
+ * java --add-modules jdk.incubator.vector -cp ".;flatlaf.jar" SortingVisualiser
+ *
+ * Headless commands:
+ * java SortingVisualiser --external-sort <input.bin> <output.bin> [runMegabytes]
+ * java SortingVisualiser --export <algorithm> <size> <output.gif|directory> [fps] [width]x[height] [seconds]
+ *
  * Uses: Java 8+
  */
 
 public class SortingVisualiser {
+    private static final List<String> HEADLESS_COMMANDS = Arrays.asList("--external-sort", "--online", "--export");
+
     public static void main(String[] args) {
+        // Other arguments, e.g. from launchers, are ignored and the GUI starts as before.
+        if (args.length > 0 && HEADLESS_COMMANDS.contains(args[0])) {
+            System.exit(runCommand(args));
+        }
         SwingUtilities.invokeLater(() -> createFrame().setVisible(true));
     }
 
+    private static int runCommand(String[] args) {
+        try {
+            switch (args[0]) {
+                case "--external-sort":
+                    if (args.length < 3) break;
+                    long runBytes = args.length > 3
+                            ? Math.multiplyExact(Long.parseLong(args[3]), 1L << 20)
+                            : ExternalSorter.defaultRunBytes();
+                    ExternalSorter sorter = ExternalSorter.forRunBytes(runBytes,
+                            ExternalSorter.DEFAULT_FAN_IN, ExternalSorter.DEFAULT_BUFFER_BYTES);
+                    System.out.println(sorter.sort(Paths.get(args[1]), Paths.get(args[2])));
+                    return 0;
+                case "--online":
+                    if (args.length < 2) break;
+                    OnlineSorter online = new OnlineSorter(OnlineSorter.DEFAULT_BUFFER);
+                    if (args[1].equals("generator") && args.length > 2) {
+                        String distribution = args.length > 3 ? args[3] : "Random";
+                        online.insertAll(SortAnalysisDialog.generateDistribution(distribution, Integer.parseInt(args[2]), new Random()));
+                    } else if (args[1].equals("stdin")) {
+                        online.insertAll(new java.io.InputStreamReader(System.in, java.nio.charset.StandardCharsets.US_ASCII), -1);
+                    } else if (args[1].equals("tail") && args.length > 2) {
+                        long idleMillis = (args.length > 3 ? Long.parseLong(args[3]) : 5) * 1000;
+                        try (java.io.Reader in = Files.newBufferedReader(Paths.get(args[2]), java.nio.charset.StandardCharsets.US_ASCII)) {
+                            online.insertAll(in, idleMillis);
+                        }
+                    } else {
+                        break;
+                    }
+                    int[] sorted = online.toSortedArray();
+                    for (int i = 1; i < sorted.length; i++) {
+                        if (sorted[i - 1] > sorted[i]) throw new IllegalStateException("Online sorter lost order at index " + i);
+                    }
+                    System.out.println(online.getReport() + ", " + online.runCount() + " runs held");
+                    return 0;
+                case "--export":
+                    if (args.length < 4) break;
+                    AlgorithmDefinition algorithm = null;
+                    for (AlgorithmDefinition def : VisualFrame.ALGORITHMS) {
+                        if (def.getDisplayName().equalsIgnoreCase(args[1])) algorithm = def;
+                    }
+                    if (algorithm == null) throw new IllegalArgumentException("Unknown algorithm: " + args[1]);
+                    int fps = args.length > 4 ? Integer.parseInt(args[4]) : FrameExporter.DEFAULT_FPS;
+                    int width = FrameExporter.DEFAULT_WIDTH, height = FrameExporter.DEFAULT_HEIGHT;
+                    if (args.length > 5) {
+                        String[] size = args[5].toLowerCase(Locale.ROOT).split("x");
+                        if (size.length != 2) throw new IllegalArgumentException("Resolution must look like 960x540.");
+                        width = Integer.parseInt(size[0]);
+                        height = Integer.parseInt(size[1]);
+                    }
+                    int seconds = args.length > 6 ? Integer.parseInt(args[6]) : FrameExporter.DEFAULT_SECONDS;
+                    int[] input = SortAnalysisDialog.generateDistribution("Random", Integer.parseInt(args[2]), new Random());
+                    List<Operation> trace = new ArrayList<>();
+                    algorithm.sort(input.clone(), trace, new SortMetrics());
+                    FrameExporter exporter = new FrameExporter(width, height, fps, Runtime.getRuntime().availableProcessors());
+                    System.out.println(exporter.export(input, trace, exporter.stepsFor(trace.size(), seconds), Paths.get(args[3])));
+                    return 0;
+                default:
+                    break;
+            }
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Error: " + ex);
+            return 1;
+        }
+        System.err.println("Usage: java SortingVisualiser --external-sort <input.bin> <output.bin> [runMegabytes]");
+        System.err.println("       java SortingVisualiser --online generator <count> [distribution]");
+        System.err.println("       java SortingVisualiser --online stdin");
+        System.err.println("       java SortingVisualiser --online tail <file> [idleSeconds]");
+        System.err.println("       java SortingVisualiser --export <algorithm> <size> <output.gif|directory> [fps] [width]x[height] [seconds]");
+        return 2;
+    }
+
     /**
      * Factory method used by the hub launcher.
      * Keeping frame creation behind a public class avoids source-launcher
@@ -124,6 +220,10 @@ class VisualFrame extends JFrame {
     private boolean skipRandomGeneration = false;
     private final JCheckBox numberToggle = new JCheckBox("Show Numbers", true);
     private final JCheckBox auxToggle = new JCheckBox("Show Aux", true);
+    private final JCheckBox heatmapToggle = new JCheckBox("🔥 Heatmap", false);
+    private final JCheckBox maxSpeedToggle = new JCheckBox("⏩ Max Speed", false);
+    private final JCheckBox activeRenderToggle = new JCheckBox("🎞 Active Rendering", false);
+    private final JLabel frameStatsLabel = new JLabel(" ");
 
     private OperationPlayer player;
     private CodeViewerDialog codeViewer;
@@ -154,6 +254,10 @@ class VisualFrame extends JFrame {
         sizeValueField.setToolTipText("Current array size.");
         numberToggle.setToolTipText("Toggle display of numeric values on the bars.");
         auxToggle.setToolTipText("Toggle display of auxiliary space arrays during out-of-place sorting (e.g., Merge Sort).");
+        heatmapToggle.setToolTipText("Show per-index read/write/swap counts and a scatter of index accesses over time under the bars.");
+        maxSpeedToggle.setToolTipText("Apply as many operations as fit in each frame and draw only the frame's final state.");
+        activeRenderToggle.setToolTipText("Play back on a dedicated render thread that paints off the Swing event thread.");
+        frameStatsLabel.setToolTipText("Median and 99th percentile time between animation frames.");
         themeToggleBtn.setToolTipText("Toggle between Dark and Light mode.");
 
         speedSlider.setInverted(true);
@@ -250,8 +354,16 @@ class VisualFrame extends JFrame {
                 player.setDelay(speedToDelay(speedSlider.getValue()));
         });
 
+        maxSpeedToggle.addActionListener(e -> {
+            speedSlider.setEnabled(!maxSpeedToggle.isSelected());
+            if (player != null)
+                player.setMaxSpeed(maxSpeedToggle.isSelected());
+        });
+
+        activeRenderToggle.addActionListener(e -> visualPanel.setActiveRendering(activeRenderToggle.isSelected()));
         numberToggle.addActionListener(e -> visualPanel.setShowNumbers(numberToggle.isSelected()));
         auxToggle.addActionListener(e -> visualPanel.setShowAux(auxToggle.isSelected()));
+        heatmapToggle.addActionListener(e -> visualPanel.setShowHeatmap(heatmapToggle.isSelected()));
 
         themeToggleBtn.addActionListener(e -> toggleTheme());
 
@@ -379,7 +491,137 @@ class VisualFrame extends JFrame {
                         "    for (int i = 0; i < a.length; i++) {",
                         "        a[i] = output[i];",
                         "    }",
-                        "}")
+                        "}"),
+                new AlgorithmDefinition("Radix Sort (Base 256)", "O(N)", "O(N)", SortingAlgorithms::radixSortLsd256,
+                        "int[][] count = histogramAllBytes(a); // one pre-pass, 4 x 256",
+                        "int[] buffer = new int[n];",
+                        "for (int shift = 0; shift < 32; shift += 8) {",
+                        "    if (allKeysShareByte(count, shift)) continue;",
+                        "    prefixSum(count[shift / 8]);",
+                        "    for (int i = 0; i < n; i++) {",
+                        "        int b = ((a[i] ^ 0x80000000) >>> shift) & 0xFF;",
+                        "        buffer[count[b]++] = a[i];",
+                        "    }",
+                        "    a[i] = buffer[i]; // for every i",
+                        "}"),
+                new AlgorithmDefinition("American Flag Sort", "O(N)", "O(1)", SortingAlgorithms::americanFlagSort,
+                        "void flagSort(int lo, int hi, int shift) {",
+                        "    if (hi - lo <= 32) { insertionSort(a, lo, hi); return; }",
+                        "    int[] count = histogram(a, lo, hi, shift);",
+                        "    int[] next = bucketStarts(count), end = bucketEnds(count);",
+                        "    for (int b = 0; b < 256; b++) {",
+                        "        while (next[b] < end[b]) {",
+                        "            int d = digit(a[next[b]], shift);",
+                        "            if (d == b) next[b]++;",
+                        "            else swap(a, next[b], next[d]++);",
+                        "        }",
+                        "    }",
+                        "    if (shift > 0) for (each bucket) flagSort(bucketLo, bucketHi, shift - 8);",
+                        "}"),
+                new AlgorithmDefinition("Parallel Radix Sort", "O(N / P)", "O(N)", SortingAlgorithms::parallelRadixSort,
+                        "int[] chunk = splitIntoChunks(a, threads);",
+                        "for (int shift = 0; shift < 32; shift += 8) {",
+                        "    parallel for (t : threads) hist[t] = histogram(chunk[t], shift);",
+                        "    if (allKeysShareByte(hist)) continue;",
+                        "    offset = prefixSumByBucketThenThread(hist);",
+                        "    parallel for (t : threads)",
+                        "        for (int v : chunk[t]) buffer[offset[t][digit(v, shift)]++] = v;",
+                        "    parallel for (t : threads)",
+                        "        copy(buffer, chunk[t], a);",
+                        "}"),
+                new AlgorithmDefinition("Sample Sort", "O(N log N)", "O(N)", SortingAlgorithms::sampleSort,
+                        "void sampleSort(int lo, int hi) {",
+                        "    if (hi - lo <= 32) { insertionSort(a, lo, hi); return; }",
+                        "    int[] splitters = pickSplitters(randomSample(a, lo, hi, k * 8), k);",
+                        "    if (allEqual(splitters)) { threeWayPartitionAndRecurse(lo, hi); return; }",
+                        "    int[] tree = eytzingerLayout(splitters);",
+                        "    for (int i = lo; i < hi; i++) {",
+                        "        int j = 1;",
+                        "        while (j < k) j = 2 * j + (a[i] > tree[j] ? 1 : 0);",
+                        "        buffer[next[j - k]++] = a[i];",
+                        "    }",
+                        "    copy(buffer, a, lo, hi);",
+                        "    parallel for (each bucket) sampleSort(bucketLo, bucketHi);",
+                        "}"),
+                new AlgorithmDefinition("Bitonic Sort", "O(N log² N)", "O(1)", SortingAlgorithms::bitonicSort,
+                        "for (int k = 2; k / 2 < n; k *= 2) {",
+                        "    for (int j = k / 2; j > 0; j /= 2) {",
+                        "        parallel for (int i = 0; i < n; i++) { // one frame per stage",
+                        "            int p = (j == k / 2) ? i ^ (k - 1) : i ^ j;",
+                        "            if (p > i && p < n && a[i] > a[p]) {",
+                        "                swap(a, i, p);",
+                        "            }",
+                        "        }",
+                        "    }",
+                        "}"),
+                new AlgorithmDefinition("Block Merge Sort", "O(N log² N)", "O(√N)", SortingAlgorithms::blockMergeSort,
+                        "for (int lo = 0; lo < n; lo += 16) insertionSort(a, lo, min(lo + 16, n));",
+                        "for (int width = 16; width < n; width *= 2) {",
+                        "    for (int lo = 0; lo < n - width; lo += 2 * width) merge(lo, lo + width, min(lo + 2 * width, n));",
+                        "}",
+                        "void merge(int lo, int mid, int hi) {",
+                        "    if (a[mid - 1] <= a[mid]) return;",
+                        "    if (min(mid - lo, hi - mid) <= buffer.length) { bufferedMerge(lo, mid, hi); return; }",
+                        "    int[] cut = splitByBinarySearch(lo, mid, hi); // keeps equal keys stable",
+                        "    rotate(a, cut[0], mid, cut[1]); // three reversals",
+                        "    merge(lo, cut[0], cut[0] + (cut[1] - mid));",
+                        "    merge(cut[0] + (cut[1] - mid), cut[1], hi);",
+                        "}"),
+                new AlgorithmDefinition("Cycle Sort", "O(N²)", "O(1)", SortingAlgorithms::cycleSort,
+                        "for (int start = 0; start < n - 1; start++) {",
+                        "    int item = a[start];",
+                        "    int pos = start;",
+                        "    do {",
+                        "        pos = start + countSmallerAfter(start, item);",
+                        "        if (pos == start) break;",
+                        "        while (item == a[pos]) pos++; // skip duplicates",
+                        "        int displaced = a[pos]; a[pos] = item; item = displaced; // one write",
+                        "    } while (pos != start);",
+                        "}"),
+                new AlgorithmDefinition("Selection Sort (Write-Minimal)", "O(N²)", "O(N)", SortingAlgorithms::writeMinimalSelectionSort,
+                        "for (int pos = 0; pos < n; pos++) {",
+                        "    int minIdx = taken[pos] ? -1 : pos; // prefer staying in place",
+                        "    for (int j = 0; j < n; j++) {",
+                        "        if (taken[j]) continue;",
+                        "        if (a[j] < a[minIdx]) minIdx = j;",
+                        "    }",
+                        "    taken[minIdx] = true;",
+                        "    source[pos] = minIdx; // reads only, no writes yet",
+                        "}",
+                        "for (each cycle of source) {",
+                        "    int held = a[start];",
+                        "    a[j] = a[source[j]]; // one write per misplaced element",
+                        "}"),
+                new AlgorithmDefinition("Counting Sort", "O(N + K)", "O(K)", SortingAlgorithms::countingSort,
+                        "int min = min(a), max = max(a); // parallel range detection",
+                        "if (max - min + 1 > max(n, 65536)) { radixSort(a); return; }",
+                        "int[][] count = new int[threads][max - min + 1];",
+                        "parallel for (chunk c) for (int v : c) count[c][v - min]++;",
+                        "int[] start = prefixSum(count summed over threads);",
+                        "parallel for (chunk c) {",
+                        "    int key = upperBound(start, c.begin) - 1;",
+                        "    for (int i = c.begin; i < c.end; i++) {",
+                        "        while (start[key + 1] <= i) key++;",
+                        "        a[i] = key + min;",
+                        "    }",
+                        "}"),
+                new AlgorithmDefinition("Bucket Sort", "O(N + K)", "O(N)", SortingAlgorithms::bucketSort,
+                        "int min = min(a), max = max(a); // parallel range detection",
+                        "int buckets = n / 4; long range = max - min + 1;",
+                        "parallel for (chunk c) for (int v : c) hist[c][(v - min) * buckets / range]++;",
+                        "offset = prefixSum(hist); // per bucket, then per chunk",
+                        "parallel for (chunk c) for (int v : c)",
+                        "    buffer[offset[c][bucketOf(v)]++] = v;",
+                        "a = buffer; // copy back",
+                        "for (each bucket [lo, hi)) {",
+                        "    if (hi - lo <= 64) insertionSort(a, lo, hi);",
+                        "    else bucketSort(a, lo, hi); // re-scatter over the bucket's own range",
+                        "}"),
+                new AlgorithmDefinition(AdaptiveSorter.AUTO_NAME, "O(N log N)", "O(N)", AdaptiveSorter::autoSort,
+                        "profile = sample(a, 256); // runs, inversions, distinct values, range",
+                        "best = fastestInHistory(profile.kind, log2(n));",
+                        "if (best == null) best = heuristic(profile, n);",
+                        "best.sort(a); // recorded as the decision in Sort Analysis")
         };
     }
 
@@ -394,6 +636,7 @@ class VisualFrame extends JFrame {
         top.add(sizeSlider);
         top.add(new JLabel("Speed:"));
         top.add(speedSlider);
+        top.add(maxSpeedToggle);
         top.add(randomizeBtn);
         top.add(loadCustomBtn);
         top.add(startBtn);
@@ -403,9 +646,13 @@ class VisualFrame extends JFrame {
 
         JPanel bottom = new JPanel(new FlowLayout(FlowLayout.LEFT));
         bottom.add(statusLabel);
+        bottom.add(Box.createHorizontalStrut(10));
+        bottom.add(frameStatsLabel);
         bottom.add(Box.createHorizontalStrut(20));
         bottom.add(numberToggle);
         bottom.add(auxToggle);
+        bottom.add(heatmapToggle);
+        bottom.add(activeRenderToggle);
         bottom.add(analysisBtn);
         bottom.add(compareBtn);
         bottom.add(themeToggleBtn);
@@ -528,6 +775,7 @@ class VisualFrame extends JFrame {
         randomizeBtn.setEnabled(!playing);
         loadCustomBtn.setEnabled(!playing);
         startBtn.setEnabled(!playing);
+        activeRenderToggle.setEnabled(!playing);
         pauseBtn.setEnabled(playing);
         if (!playing) {
             pauseBtn.setText("Pause");
@@ -579,11 +827,19 @@ class VisualFrame extends JFrame {
                 long memAfter = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
                 
                 long memUsed = Math.max(0, memAfter - memBefore);
-                SortStats stats = new SortStats(algorithm.getDisplayName(), algorithmTimeNanos, memUsed, algorithm.getTimeComplexity(), algorithm.getSpaceComplexity(), metrics.swaps, metrics.arrayWrites, metrics.arrayReads, metrics.comparisons, metrics.peakAuxSpace, arr.length);
+                SortStats stats = SortStats.fromMetrics(algorithm.getDisplayName(), algorithmTimeNanos, memUsed, algorithm.getTimeComplexity(), algorithm.getSpaceComplexity(), metrics, arr.length);
+                AdaptiveSorter.observe(algorithm.getDisplayName(), arr, algorithmTimeNanos);
+                AlgorithmDefinition dispatched = metrics.selectedAlgorithm == null ? null : AdaptiveSorter.find(metrics.selectedAlgorithm);
 
                 SwingUtilities.invokeLater(() -> {
                     history.add(stats);
-                    statusLabel.setText("Status: Playing (" + algorithm.getDisplayName() + ")");
+                    String playingName = algorithm.getDisplayName();
+                    if (dispatched != null) {
+                        // Operations carry the dispatched algorithm's code lines.
+                        activeAlgorithm = dispatched;
+                        playingName += " → " + dispatched.getDisplayName();
+                    }
+                    statusLabel.setText("Status: Playing (" + playingName + ")");
                     player = new OperationPlayer(ops,
                             visualPanel,
                             speedToDelay(speedSlider.getValue()),
@@ -601,6 +857,9 @@ class VisualFrame extends JFrame {
                                 analysisBtn.setEnabled(true);
                                 player = null;
                             });
+                    player.setMaxSpeed(maxSpeedToggle.isSelected());
+                    player.setActiveRendering(activeRenderToggle.isSelected());
+                    player.setFrameStatsLabel(frameStatsLabel);
                     player.start();
                 });
             } catch (Exception ex) {
@@ -627,6 +886,171 @@ class VisualPanel extends JPanel {
     private int peakAuxElements = 0;
     private boolean showNumbers = true;
     private boolean showAux = true;
+    private int cachedMax = 1;
+    private boolean maxDirty = true;
+    // Used once an array has more elements than the panel has pixel columns.
+    private final ColumnAggregate mainColumns = new ColumnAggregate();
+    private final ColumnAggregate auxColumns = new ColumnAggregate();
+    // Persistent back buffer; between full redraws only the pixel columns marked dirty are repainted.
+    private BufferedImage backBuffer;
+    // Active rendering draws into an accelerated surface and presents it from the render thread.
+    private VolatileImage volatileBuffer;
+    private volatile boolean activeRendering;
+    /** Guards panel state while a render thread applies operations and paints outside the EDT. */
+    final Object renderLock = new Object();
+    private boolean fullRedraw = true;
+    private int bufferWidth;
+    private boolean[] mainDirty = new boolean[0];
+    private boolean[] auxDirty = new boolean[0];
+    private int dirtyMinX = Integer.MAX_VALUE;
+    private int dirtyMaxX = Integer.MIN_VALUE;
+    private int paintedMax = -1;
+    private int paintedMainH = -1;
+    private int paintedTraceH = -1;
+    private int labelReach;
+
+    // Trace view: per-index access counters shown as a heat strip, plus a locality scatter
+    // (x = index, y = time through the trace). Only recorded while the heatmap is shown.
+    private static final int LANE_MAIN = 0, LANE_AUX = 1, LANE_TRACE = 2;
+    private static final int HEAT_READS = 0, HEAT_WRITES = 1, HEAT_SWAPS = 2;
+    private static final int HEAT_ROW_HEIGHT = 6;
+    private static final int LOCALITY_ROWS = 160;
+    private static final int LOCALITY_READ_RGB = 0x0090FF;
+    private static final int LOCALITY_WRITE_RGB = 0xFF6000;
+    private static final Color[] HEAT_PALETTE = buildHeatPalette();
+    private boolean showHeatmap = false;
+    private final int[][] heatCounts = new int[3][];
+    private final int[] heatMax = new int[3];
+    private final int[] heatLevels = new int[3]; // bit length of heatMax; the colour scale changes with it
+    private boolean heatRescale;
+    private long traceOrdinal;
+    private long traceLength;
+    private BufferedImage localityImage;
+    private int[] localityPixels;
+
+    // Paint-path caches: nothing below is allocated per frame.
+    private static final int PALETTE_MAX_SIZE = 1024;
+    private static final Font[] LABEL_FONTS = {
+            new Font("Arial", Font.BOLD, 14), new Font("Arial", Font.BOLD, 10), new Font("Arial", Font.BOLD, 7)
+    };
+    private static final Font AUX_FONT = new Font("Arial", Font.PLAIN, 12);
+    private static final Color AUX_COLOR = Color.getHSBColor(0.2f, 0.8f, 0.8f);
+    private Graphics2D backGraphics;
+    private final FontMetrics[] labelMetrics = new FontMetrics[LABEL_FONTS.length];
+    private final int[] labelReaches = new int[LABEL_FONTS.length];
+    private final char[] labelChars = new char[11];
+    // Opaque stand-in for the old 70% black label box; translucent fills allocate in Java2D's software loops.
+    private Color labelBackground;
+    private Color[] palette = new Color[0];
+    private Color[] dimPalette = new Color[0];
+    private int paletteMax = -1;
+    private String auxCaption;
+    private int auxCaptionLength = -1;
+    private int auxCaptionPeak = -1;
+
+    /**
+     * Per-pixel-column summary (min, max and last touched element) of an array wider than
+     * the panel. Writes update a column in O(1) unless they remove its min or max, in which
+     * case only that column is rescanned before the next paint.
+     */
+    private static final class ColumnAggregate {
+        private int[] data;
+        private int columns;
+        private int[] min = new int[0];
+        private int[] max = new int[0];
+        private int[] last = new int[0];
+        private boolean[] dirty = new boolean[0];
+        private int[] dirtyList = new int[0];
+        private int dirtyCount;
+
+        boolean matches(int[] array, int columnCount) {
+            return data == array && columns == columnCount;
+        }
+
+        void reset(int[] array, int columnCount) {
+            data = array;
+            columns = columnCount;
+            if (min.length < columnCount) {
+                min = new int[columnCount];
+                max = new int[columnCount];
+                last = new int[columnCount];
+                dirty = new boolean[columnCount];
+                dirtyList = new int[columnCount];
+            }
+            dirtyCount = 0;
+            for (int c = 0; c < columnCount; c++) {
+                last[c] = start(c);
+                dirty[c] = false;
+                markDirty(c);
+            }
+        }
+
+        void release() {
+            data = null;
+        }
+
+        int columnOf(int index) {
+            return (int) ((long) index * columns / data.length);
+        }
+
+        int start(int column) {
+            return (int) (((long) column * data.length + columns - 1) / columns);
+        }
+
+        void write(int index, int oldValue, int newValue) {
+            if (data == null) return;
+            int c = columnOf(index);
+            last[c] = index;
+            if (dirty[c]) return;
+            if ((oldValue == max[c] && newValue < oldValue) || (oldValue == min[c] && newValue > oldValue)) {
+                markDirty(c);
+            } else {
+                if (newValue > max[c]) max[c] = newValue;
+                if (newValue < min[c]) min[c] = newValue;
+            }
+        }
+
+        void swap(int i, int j, int valueI, int valueJ) {
+            if (data == null) return;
+            if (columnOf(i) == columnOf(j)) {
+                last[columnOf(j)] = j;
+                return;
+            }
+            write(i, valueI, valueJ);
+            write(j, valueJ, valueI);
+        }
+
+        void refresh() {
+            for (int d = 0; d < dirtyCount; d++) {
+                int c = dirtyList[d];
+                int lo = start(c);
+                int hi = start(c + 1);
+                int mn = Integer.MAX_VALUE;
+                int mx = Integer.MIN_VALUE;
+                for (int i = lo; i < hi; i++) {
+                    int v = data[i];
+                    if (v < mn) mn = v;
+                    if (v > mx) mx = v;
+                }
+                min[c] = mn;
+                max[c] = mx;
+                dirty[c] = false;
+            }
+            dirtyCount = 0;
+        }
+
+        int maxOfColumns() {
+            int result = Integer.MIN_VALUE;
+            for (int c = 0; c < columns; c++) result = Math.max(result, max[c]);
+            return result;
+        }
+
+        private void markDirty(int column) {
+            if (dirty[column]) return;
+            dirty[column] = true;
+            dirtyList[dirtyCount++] = column;
+        }
+    }
 
     public VisualPanel() {
         setPreferredSize(new Dimension(1000, 520));
@@ -634,20 +1058,141 @@ class VisualPanel extends JPanel {
     }
 
     public void setShowNumbers(boolean show) {
-        this.showNumbers = show;
-        repaint();
+        synchronized (renderLock) {
+            this.showNumbers = show;
+            invalidateAll();
+        }
     }
 
     public void setShowAux(boolean show) {
-        this.showAux = show;
-        repaint();
+        synchronized (renderLock) {
+            this.showAux = show;
+            invalidateAll();
+        }
+    }
+
+    /** Shows the access heat strip and locality scatter under the bars and starts counting accesses. */
+    public void setShowHeatmap(boolean show) {
+        synchronized (renderLock) {
+            this.showHeatmap = show;
+            resetTrace();
+            invalidateAll();
+        }
+    }
+
+    public boolean isShowingHeatmap() {
+        return showHeatmap;
+    }
+
+    /** Starts a new trace of {@code length} operations; the locality view spreads them over its height. */
+    public void beginTrace(long length) {
+        synchronized (renderLock) {
+            traceLength = length;
+            resetTrace();
+            invalidateAll();
+        }
+    }
+
+    private void resetTrace() {
+        traceOrdinal = 0;
+        Arrays.fill(heatMax, 0);
+        Arrays.fill(heatLevels, 0);
+        int n = showHeatmap && array != null ? array.length : 0;
+        for (int k = 0; k < heatCounts.length; k++) {
+            if (n == 0) heatCounts[k] = null;
+            else if (heatCounts[k] == null || heatCounts[k].length != n) heatCounts[k] = new int[n];
+            else Arrays.fill(heatCounts[k], 0);
+        }
+        if (!showHeatmap) {
+            localityImage = null;
+            localityPixels = null;
+        } else if (localityPixels != null) {
+            Arrays.fill(localityPixels, 0);
+        } else if (getWidth() > 0) {
+            resizeLocalityImage(getWidth());
+        }
+    }
+
+    /** Counts the accesses of one traced operation and plots them in the locality view. */
+    public void traceOperation(Operation op) {
+        long ordinal = traceOrdinal++;
+        if (array == null || heatCounts[0] == null || heatCounts[0].length != array.length)
+            return;
+        int row = localityPixels == null ? -1
+                : (int) (traceLength > 0 ? Math.min(LOCALITY_ROWS - 1, ordinal * LOCALITY_ROWS / traceLength) : ordinal % LOCALITY_ROWS);
+        switch (op.type) {
+            case COMPARE:
+                traceAccess(HEAT_READS, op.i, row, LOCALITY_READ_RGB);
+                traceAccess(HEAT_READS, op.j, row, LOCALITY_READ_RGB);
+                break;
+            case SWAP:
+                traceAccess(HEAT_SWAPS, op.i, row, LOCALITY_WRITE_RGB);
+                traceAccess(HEAT_SWAPS, op.j, row, LOCALITY_WRITE_RGB);
+                break;
+            case OVERWRITE:
+                traceAccess(HEAT_WRITES, op.i, row, LOCALITY_WRITE_RGB);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void traceAccess(int kind, int i, int row, int rgb) {
+        if (i < 0 || i >= array.length)
+            return;
+        int count = ++heatCounts[kind][i];
+        if (count > heatMax[kind]) {
+            heatMax[kind] = count;
+            int level = 32 - Integer.numberOfLeadingZeros(count);
+            if (level != heatLevels[kind]) {
+                heatLevels[kind] = level;
+                heatRescale = true;
+            }
+        }
+        if (row >= 0) {
+            int width = localityImage.getWidth();
+            int base = row * width;
+            int x1 = Math.max(slotStart(i, array.length, width) + 1, slotStart(i + 1, array.length, width));
+            for (int x = slotStart(i, array.length, width); x < x1; x++) localityPixels[base + x] |= rgb;
+        }
+        markMainDirty(i);
+    }
+
+    private static Color[] buildHeatPalette() {
+        Color[] colors = new Color[256];
+        colors[0] = new Color(28, 28, 34); // never touched
+        for (int c = 1; c < colors.length; c++) {
+            float t = c / 255f; // dark red -> orange -> yellow -> white
+            int r = (int) (90 + 165 * Math.min(1f, t * 2f));
+            int g = (int) (255 * Math.max(0f, Math.min(1f, t * 2f - 0.5f)));
+            int b = (int) (255 * Math.max(0f, t * 3f - 2f));
+            colors[c] = new Color(r, g, b);
+        }
+        return colors;
+    }
+
+    /** Switches between EDT repaints from a BufferedImage and render-thread presentation from a VolatileImage. */
+    public void setActiveRendering(boolean active) {
+        synchronized (renderLock) {
+            if (active == activeRendering)
+                return;
+            activeRendering = active;
+            if (backGraphics != null) backGraphics.dispose();
+            backGraphics = null;
+            backBuffer = null;
+            if (volatileBuffer != null) volatileBuffer.flush();
+            volatileBuffer = null;
+            invalidateAll();
+        }
     }
 
     public void setCustomArray(int[] customArray) {
         this.array = customArray.clone();
         this.aux = customArray.clone();
-        resetHighlights();
-        repaint();
+        maxDirty = true;
+        highlightA = highlightB = -1;
+        resetTrace();
+        invalidateAll();
     }
 
     public void generateRandomArray(int size) {
@@ -656,8 +1201,10 @@ class VisualPanel extends JPanel {
         for (int i = 0; i < size; i++)
             array[i] = rnd.nextInt(400) + 5;
         aux = array.clone();
-        resetHighlights();
-        repaint();
+        maxDirty = true;
+        highlightA = highlightB = -1;
+        resetTrace();
+        invalidateAll();
     }
 
     public void clearArray() {
@@ -665,17 +1212,46 @@ class VisualPanel extends JPanel {
         this.aux = null;
         this.visualAuxSpace = null;
         this.peakAuxElements = 0;
-        resetHighlights();
-        repaint();
+        mainColumns.release();
+        auxColumns.release();
+        highlightA = highlightB = -1;
+        resetTrace();
+        invalidateAll();
     }
 
     public int[] getArrayCopy() {
         return array == null ? null : array.clone();
     }
 
+    public int length() {
+        return array == null ? 0 : array.length;
+    }
+
+    public int valueAt(int i) {
+        return array[i];
+    }
+
+    /** Stores a value without moving the highlights; used when replaying coalesced operations. */
+    public void writeValue(int i, int value) {
+        if (array == null)
+            return;
+        int old = array[i];
+        if (old == value)
+            return;
+        array[i] = value;
+        if (mainColumns.data == array) mainColumns.write(i, old, value);
+        if (value > cachedMax) cachedMax = value;
+        else if (old == cachedMax && value < old) maxDirty = true;
+        markMainDirty(i);
+    }
+
+    public void highlight(int a, int b) {
+        setHighlights(a, b);
+    }
+
     public void resetHighlights() {
-        highlightA = highlightB = -1;
-        repaint();
+        setHighlights(-1, -1);
+        repaintDirty();
     }
 
     public void applyOperation(Operation op) {
@@ -685,185 +1261,586 @@ class VisualPanel extends JPanel {
     public void applyOperation(Operation op, boolean repaintAfter) {
         if (op == null)
             return;
+        if (showHeatmap && array != null)
+            traceOperation(op);
 
         switch (op.type) {
             case COMPARE:
-                highlightA = op.i;
-                highlightB = op.j;
+                setHighlights(op.i, op.j);
                 break;
             case SWAP:
                 if (array != null) {
                     int tmp = array[op.i];
                     array[op.i] = array[op.j];
                     array[op.j] = tmp;
+                    if (mainColumns.data == array) mainColumns.swap(op.i, op.j, tmp, array[op.i]);
+                    markMainDirty(op.i);
+                    markMainDirty(op.j);
                 }
-                highlightA = op.i;
-                highlightB = op.j;
+                setHighlights(op.i, op.j);
                 break;
             case OVERWRITE:
-                if (array != null) {
-                    array[op.i] = op.value;
-                }
-                highlightA = op.i;
-                highlightB = -1;
+                writeValue(op.i, op.value);
+                setHighlights(op.i, -1);
                 break;
             case MARK_FINAL:
-                highlightA = op.i;
-                highlightB = -1;
+                setHighlights(op.i, -1);
                 break;
             case AUX_ALLOCATE:
                 if (visualAuxSpace == null || visualAuxSpace.length != op.value) {
                     visualAuxSpace = new int[op.value];
                 }
                 if (op.value > peakAuxElements) peakAuxElements = op.value;
+                fullRedraw = true;
                 break;
             case AUX_WRITE:
                 if (visualAuxSpace != null && op.i >= 0 && op.i < visualAuxSpace.length) {
+                    int old = visualAuxSpace[op.i];
                     visualAuxSpace[op.i] = op.value;
+                    if (auxColumns.data == visualAuxSpace) auxColumns.write(op.i, old, op.value);
+                    markAuxDirty(op.i);
                 }
                 break;
             case AUX_CLEAR:
                 visualAuxSpace = null;
+                fullRedraw = true;
+                break;
+            case BATCH:
                 break;
         }
 
         if (repaintAfter) {
-            repaint();
+            repaintDirty();
         }
     }
 
     public void finishBatch() {
-        repaint();
+        repaintDirty();
     }
 
     public void resetToOriginal() {
         if (aux != null)
             array = aux.clone();
+        maxDirty = true;
         visualAuxSpace = null;
         peakAuxElements = 0;
-        resetHighlights();
+        highlightA = highlightB = -1;
+        resetTrace();
+        invalidateAll();
+    }
+
+    private void invalidateAll() {
+        fullRedraw = true;
         repaint();
     }
 
+    private void setHighlights(int a, int b) {
+        if (a == highlightA && b == highlightB)
+            return;
+        markMainDirty(highlightA);
+        markMainDirty(highlightB);
+        highlightA = a;
+        highlightB = b;
+        markMainDirty(a);
+        markMainDirty(b);
+    }
+
+    /** Marks the pixel columns showing element {@code i} of the main array for redraw. */
+    private void markMainDirty(int i) {
+        if (array == null || i < 0 || i >= array.length)
+            return;
+        markDirty(mainDirty, i, array.length, labelReach);
+    }
+
+    private void markAuxDirty(int i) {
+        if (!showAux)
+            return;
+        markDirty(auxDirty, i, visualAuxSpace.length, 0);
+    }
+
+    /** {@code reach} widens the range for value labels, which can overhang their bar on both sides. */
+    private void markDirty(boolean[] dirty, int i, int n, int reach) {
+        if (fullRedraw || dirty.length != bufferWidth)
+            return;
+        int x0 = Math.max(0, slotStart(i, n, bufferWidth) - reach);
+        int x1 = Math.min(bufferWidth, Math.max(x0 + 1, slotStart(i + 1, n, bufferWidth) + reach));
+        for (int x = x0; x < x1; x++) dirty[x] = true;
+        dirtyMinX = Math.min(dirtyMinX, x0);
+        dirtyMaxX = Math.max(dirtyMaxX, x1);
+    }
+
+    /** Requests a repaint of only the columns touched since the last paint. */
+    private void repaintDirty() {
+        if (activeRendering && !SwingUtilities.isEventDispatchThread())
+            return; // the render thread presents its own frames
+        if (heatRescale && !fullRedraw) {
+            // The heat strip's colour scale changed, so the whole strip is repainted.
+            dirtyMinX = 0;
+            dirtyMaxX = bufferWidth;
+        }
+        if (fullRedraw) {
+            repaint();
+        } else if (dirtyMinX < dirtyMaxX) {
+            repaint(dirtyMinX, 0, dirtyMaxX - dirtyMinX, getHeight());
+        }
+    }
+
+    /** First pixel column of element {@code i} when {@code n} elements share {@code width} pixels. */
+    private static int slotStart(int i, int n, int width) {
+        return (int) ((long) i * width / n);
+    }
+
+    /** Element whose slot contains pixel column {@code x}. */
+    private static int elementAt(int x, int n, int width) {
+        int i = (int) Math.min(n - 1, (long) x * n / width);
+        while (i + 1 < n && slotStart(i + 1, n, width) <= x) i++;
+        while (i > 0 && slotStart(i, n, width) > x) i--;
+        return i;
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        if (array == null)
-            return;
+        synchronized (renderLock) {
+            Image frame = renderFrame();
+            if (frame == null) {
+                super.paintComponent(g);
+                return;
+            }
+            // The back buffer covers the whole panel, so the background fill is skipped.
+            g.drawImage(frame, 0, 0, null);
+            if (volatileBuffer != null && volatileBuffer.contentsLost())
+                fullRedraw = true;
+        }
+    }
+
+    /** Draws the current state into an offscreen graphics context, e.g. for exporting frames. */
+    public void renderTo(Graphics2D g) {
+        paintComponent(g);
+    }
+
+    /**
+     * Active rendering: brings the back buffer up to date and presents it straight to the screen
+     * from the calling thread, bypassing the EDT's repaint queue.
+     */
+    public void renderActive() {
+        synchronized (renderLock) {
+            Image frame = renderFrame();
+            Graphics g = frame == null ? null : getGraphics();
+            if (g == null)
+                return;
+            try {
+                g.drawImage(frame, 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+            Toolkit.getDefaultToolkit().sync();
+            if (volatileBuffer != null && volatileBuffer.contentsLost())
+                fullRedraw = true;
+        }
+    }
+
+    /** Returns the back buffer for this size: a VolatileImage in active rendering mode, a BufferedImage otherwise. */
+    private Image prepareBuffer(int w, int h) {
+        GraphicsConfiguration gc = activeRendering ? getGraphicsConfiguration() : null;
+        if (gc != null) {
+            int state = volatileBuffer == null || volatileBuffer.getWidth() != w || volatileBuffer.getHeight() != h
+                    ? VolatileImage.IMAGE_INCOMPATIBLE
+                    : volatileBuffer.validate(gc);
+            if (state == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (volatileBuffer != null) volatileBuffer.flush();
+                volatileBuffer = gc.createCompatibleVolatileImage(w, h);
+                bindGraphics(volatileBuffer.createGraphics());
+            } else if (state == VolatileImage.IMAGE_RESTORED) {
+                fullRedraw = true; // the surface was lost along with its contents
+            }
+            return volatileBuffer;
+        }
+        if (backBuffer == null || backBuffer.getWidth() != w || backBuffer.getHeight() != h) {
+            backBuffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            bindGraphics(backBuffer.createGraphics());
+        }
+        return backBuffer;
+    }
 
-        Graphics2D g2 = (Graphics2D) g;
+    private void bindGraphics(Graphics2D g2) {
+        if (backGraphics != null) backGraphics.dispose();
+        backGraphics = g2;
+        for (int f = 0; f < LABEL_FONTS.length; f++) {
+            labelMetrics[f] = backGraphics.getFontMetrics(LABEL_FONTS[f]);
+            labelReaches[f] = labelMetrics[f].stringWidth("-2147483648") + 4;
+        }
+        fullRedraw = true;
+    }
+
+    /** Draws everything marked dirty into the back buffer; returns null when there is nothing to draw. */
+    private Image renderFrame() {
         int w = getWidth();
         int h = getHeight();
-        
-        int mainH = (visualAuxSpace != null && showAux) ? (int)(h * 0.7) : h;
-        int auxH = h - mainH;
-        
+        if (array == null || array.length == 0 || w <= 0 || h <= 0)
+            return null;
         int n = array.length;
-        double barWidth = Math.max(1, (double) w / n);
+        Image target = prepareBuffer(w, h);
+        if (mainDirty.length != w) {
+            mainDirty = new boolean[w];
+            auxDirty = new boolean[w];
+            fullRedraw = true;
+        }
+        bufferWidth = w;
+
+        int traceH = showHeatmap ? Math.max(3 * HEAT_ROW_HEIGHT + 24, h / 4) : 0;
+        int laneBottom = h - traceH; // bars and the aux lane share the space above the trace lane
+        int mainH = (visualAuxSpace != null && showAux) ? (int)(laneBottom * 0.7) : laneBottom;
+        boolean columnMode = n > w;
+        if (showHeatmap && (localityImage == null || localityImage.getWidth() != w)) {
+            resizeLocalityImage(w);
+        }
 
-        int fontSize = (n <= 50) ? 14 : (n <= 120) ? 10 : 7;
-        g2.setFont(new Font("Arial", Font.BOLD, fontSize));
+        if (columnMode) {
+            if (!mainColumns.matches(array, w)) {
+                mainColumns.reset(array, w);
+                fullRedraw = true;
+            }
+            mainColumns.refresh();
+        }
+        if (maxDirty) {
+            if (columnMode) {
+                cachedMax = mainColumns.maxOfColumns();
+            } else {
+                cachedMax = Integer.MIN_VALUE;
+                for (int v : array)
+                    if (v > cachedMax)
+                        cachedMax = v;
+            }
+            maxDirty = false;
+        }
+        int max = Math.max(1, cachedMax);
+        if (max != paintedMax || mainH != paintedMainH || traceH != paintedTraceH) {
+            fullRedraw = true; // bar scale or lane split changed
+        }
+        if (max != paletteMax) {
+            rebuildPalette(max);
+        }
+        if (labelBackground == null) {
+            Color back = getBackground();
+            labelBackground = new Color(back.getRed() * 75 / 255, back.getGreen() * 75 / 255, back.getBlue() * 75 / 255);
+        }
 
-        int max = 1;
-        for (int v : array)
-            if (v > max)
-                max = v;
+        Graphics2D bg = backGraphics;
+        if (fullRedraw) {
+            paintMainRange(bg, 0, w, mainH, max, columnMode);
+            if (mainH < laneBottom) paintAuxRange(bg, 0, w, mainH, laneBottom, max);
+            if (traceH > 0) paintTraceRange(bg, 0, w, laneBottom, h);
+        } else {
+            paintDirtyRuns(bg, mainDirty, LANE_MAIN, mainH, laneBottom, h, max, columnMode);
+            if (mainH < laneBottom) paintDirtyRuns(bg, auxDirty, LANE_AUX, mainH, laneBottom, h, max, columnMode);
+            if (traceH > 0) {
+                if (heatRescale) paintTraceRange(bg, 0, w, laneBottom, h);
+                else paintDirtyRuns(bg, mainDirty, LANE_TRACE, mainH, laneBottom, h, max, columnMode);
+            }
+        }
+        heatRescale = false;
+        Arrays.fill(mainDirty, false);
+        Arrays.fill(auxDirty, false);
+        dirtyMinX = Integer.MAX_VALUE;
+        dirtyMaxX = Integer.MIN_VALUE;
+        fullRedraw = false;
+        paintedMax = max;
+        paintedMainH = mainH;
+        paintedTraceH = traceH;
+        return target;
+    }
 
-        // Draw main array
-        for (int i = 0; i < n; i++) {
+    private void paintDirtyRuns(Graphics2D g2, boolean[] dirty, int lane, int mainH, int laneBottom, int h, int max, boolean columnMode) {
+        int from = Math.max(0, dirtyMinX);
+        int to = Math.min(dirty.length, dirtyMaxX);
+        for (int x = from; x < to; x++) {
+            if (!dirty[x])
+                continue;
+            int end = x + 1;
+            while (end < to && dirty[end]) end++;
+            if (lane == LANE_MAIN) {
+                paintMainRange(g2, x, end, mainH, max, columnMode);
+            } else if (lane == LANE_AUX) {
+                paintAuxRange(g2, x, end, mainH, laneBottom, max);
+            } else {
+                paintTraceRange(g2, x, end, laneBottom, h);
+            }
+            x = end;
+        }
+    }
+
+    /** Clears and redraws the main lane between pixel columns {@code x0} (inclusive) and {@code x1}. */
+    private void paintMainRange(Graphics2D g2, int x0, int x1, int mainH, int max, boolean columnMode) {
+        int w = bufferWidth;
+        int n = array.length;
+        g2.setColor(getBackground());
+        g2.fillRect(x0, 0, x1 - x0, mainH);
+
+        labelReach = 0;
+        if (columnMode) {
+            paintColumns(g2, x0, x1, mainH, max);
+            return;
+        }
+        // Runs are whole bar slots, except that label overhang can cut a slot; clip only then.
+        if (showNumbers) g2.setClip(x0, 0, x1 - x0, mainH);
+
+        for (int i = elementAt(x0, n, w); i < n; i++) {
+            int x = slotStart(i, n, w);
+            if (x >= x1)
+                break;
             int val = array[i];
             int barH = (int) ((val / (double) max) * (mainH - 20));
-            int x = (int) (i * barWidth);
-            int y = mainH - barH;
 
-            if (i == highlightA || i == highlightB) {
-                g2.setColor(Color.RED);
-            } else {
-                float hue = 0.6f - (float) val / max * 0.6f;
-                g2.setColor(Color.getHSBColor(hue, 0.9f, 0.9f));
-            }
-            g2.fillRect(x, y, (int) Math.ceil(barWidth), barH);
+            g2.setColor(i == highlightA || i == highlightB ? Color.RED : palette[paletteIndex(val)]);
+            g2.fillRect(x, mainH - barH, slotStart(i + 1, n, w) - x, barH);
+        }
 
-            if (showNumbers) {
-                String valueStr = String.valueOf(val);
-                FontMetrics fm = g2.getFontMetrics();
-                int strWidth = fm.stringWidth(valueStr);
-                int strHeight = fm.getHeight();
+        if (showNumbers) {
+            // Labels may be wider than their bar, so neighbours' labels are redrawn into the clip too.
+            int fontIndex = (n <= 50) ? 0 : (n <= 120) ? 1 : 2;
+            FontMetrics fm = labelMetrics[fontIndex];
+            int reach = labelReaches[fontIndex];
+            labelReach = reach;
+            g2.setFont(LABEL_FONTS[fontIndex]);
+            double barWidth = (double) w / n;
+            int strHeight = fm.getHeight();
+            int first = elementAt(Math.max(0, x0 - reach), n, w);
+            int last = elementAt(Math.min(w - 1, x1 + reach), n, w);
+            for (int i = first; i <= last; i++) {
+                int val = array[i];
+                int offset = formatLabel(val);
+                int length = labelChars.length - offset;
+                int strWidth = fm.charsWidth(labelChars, offset, length);
 
                 if (barWidth > strWidth * 0.9 || n < 50) {
-                    int textX = x + (int) (barWidth / 2) - (strWidth / 2);
-                    int textY = y - 2;
+                    int barH = (int) ((val / (double) max) * (mainH - 20));
+                    int textX = slotStart(i, n, w) + (int) (barWidth / 2) - (strWidth / 2);
+                    int textY = mainH - barH - 2;
 
-                    g2.setColor(new Color(0, 0, 0, 180));
+                    g2.setColor(labelBackground);
                     g2.fillRect(textX - 2, textY - strHeight + fm.getAscent(), strWidth + 4, strHeight);
 
                     g2.setColor(Color.WHITE);
-                    g2.drawString(valueStr, textX, textY);
-                }
-            }
-        }
-        
-        // Draw aux array if present
-        if (visualAuxSpace != null && showAux) {
-            g2.setColor(Color.DARK_GRAY);
-            g2.drawLine(0, mainH, w, mainH);
-            
-            g2.setColor(Color.LIGHT_GRAY);
-            g2.setFont(new Font("Arial", Font.PLAIN, 12));
-            g2.drawString("Current Aux Space Elements: " + visualAuxSpace.length + " | Peak: " + peakAuxElements, 10, mainH + 15);
-            
-            int auxN = visualAuxSpace.length;
-            if (auxN > 0) {
-                double auxBarWidth = Math.max(1, (double) w / auxN);
-                for (int i = 0; i < auxN; i++) {
-                    int val = visualAuxSpace[i];
-                    if (val <= 0) continue; // don't draw uninitialized
-                    
-                    int barH = (int) ((val / (double) max) * (auxH - 25));
-                    int x = (int) (i * auxBarWidth);
-                    int y = h - barH;
-
-                    g2.setColor(Color.getHSBColor(0.2f, 0.8f, 0.8f)); // Use a different hue for aux array
-                    g2.fillRect(x, y, (int) Math.ceil(auxBarWidth), barH);
+                    g2.drawChars(labelChars, offset, length, textX, textY);
                 }
             }
+            g2.setClip(null);
         }
     }
-}
-
-/* ---------------------------- Operation model ---------------------------- */
-enum OpType {
-    COMPARE, SWAP, OVERWRITE, MARK_FINAL, AUX_ALLOCATE, AUX_WRITE, AUX_CLEAR
-}
-
-class Operation {
-    final OpType type;
-    final int i, j;
-    final int value;
-    final int codeLine;
 
-    private Operation(OpType type, int i, int j, int value, int codeLine) {
-        this.type = type;
-        this.i = i;
-        this.j = j;
-        this.value = value;
-        this.codeLine = codeLine;
+    /** Writes the decimal digits of {@code value} right-aligned into {@link #labelChars}; returns the start offset. */
+    private int formatLabel(int value) {
+        int pos = labelChars.length;
+        long v = Math.abs((long) value);
+        do {
+            labelChars[--pos] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        if (value < 0) labelChars[--pos] = '-';
+        return pos;
     }
 
-    public static Operation compare(int i, int j) {
-        return compare(i, j, -1);
+    /** Rebuilds the value-to-colour lookup table; exact per value up to {@link #PALETTE_MAX_SIZE} values. */
+    private void rebuildPalette(int max) {
+        int size = Math.min(max + 1, PALETTE_MAX_SIZE);
+        palette = new Color[size];
+        dimPalette = new Color[size];
+        for (int b = 0; b < size; b++) {
+            float hue = 0.6f - (float) b / Math.max(1, size - 1) * 0.6f;
+            palette[b] = Color.getHSBColor(hue, 0.9f, 0.9f);
+            dimPalette[b] = Color.getHSBColor(hue, 0.9f, 0.45f);
+        }
+        paletteMax = max;
     }
 
-    public static Operation compare(int i, int j, int codeLine) {
-        return new Operation(OpType.COMPARE, i, j, 0, codeLine);
+    private int paletteIndex(int value) {
+        if (value <= 0) return 0;
+        return (int) Math.min(palette.length - 1, (long) value * (palette.length - 1) / paletteMax);
     }
 
-    public static Operation swap(int i, int j) {
-        return swap(i, j, -1);
-    }
+    private void paintAuxRange(Graphics2D g2, int x0, int x1, int mainH, int h, int max) {
+        int w = bufferWidth;
+        int auxH = h - mainH;
+        int auxN = visualAuxSpace.length;
+        g2.setColor(getBackground());
+        g2.fillRect(x0, mainH, x1 - x0, auxH);
 
-    public static Operation swap(int i, int j, int codeLine) {
-        return new Operation(OpType.SWAP, i, j, 0, codeLine);
+        g2.setColor(Color.DARK_GRAY);
+        g2.drawLine(x0, mainH, x1 - 1, mainH);
+
+        if (auxN != auxCaptionLength || peakAuxElements != auxCaptionPeak) {
+            auxCaption = "Current Aux Space Elements: " + auxN + " | Peak: " + peakAuxElements;
+            auxCaptionLength = auxN;
+            auxCaptionPeak = peakAuxElements;
+        }
+        g2.setColor(Color.LIGHT_GRAY);
+        g2.setFont(AUX_FONT);
+        g2.setClip(x0, mainH, x1 - x0, auxH);
+        g2.drawString(auxCaption, 10, mainH + 15);
+        g2.setClip(null);
+
+        if (auxN > w) {
+            if (!auxColumns.matches(visualAuxSpace, w)) {
+                auxColumns.reset(visualAuxSpace, w);
+            }
+            auxColumns.refresh();
+            g2.setColor(AUX_COLOR);
+            for (int c = x0; c < x1; c++) {
+                int val = auxColumns.max[c];
+                if (val <= 0) continue; // column holds only uninitialized slots
+                int barH = (int) ((val / (double) max) * (auxH - 25));
+                g2.fillRect(c, h - barH, 1, barH);
+            }
+        } else if (auxN > 0) {
+            for (int i = elementAt(x0, auxN, w); i < auxN; i++) {
+                int x = slotStart(i, auxN, w);
+                if (x >= x1)
+                    break;
+                int val = visualAuxSpace[i];
+                if (val <= 0) continue; // don't draw uninitialized
+
+                int barH = (int) ((val / (double) max) * (auxH - 25));
+                g2.setColor(AUX_COLOR); // Use a different hue for aux array
+                g2.fillRect(x, h - barH, slotStart(i + 1, auxN, w) - x, barH);
+            }
+        }
+    }
+
+    /** Keeps the locality history when the panel width changes by rescaling it into a new image. */
+    private void resizeLocalityImage(int w) {
+        BufferedImage resized = new BufferedImage(w, LOCALITY_ROWS, BufferedImage.TYPE_INT_RGB);
+        if (localityImage != null) {
+            Graphics2D g = resized.createGraphics();
+            g.drawImage(localityImage, 0, 0, w, LOCALITY_ROWS, null);
+            g.dispose();
+        }
+        localityImage = resized;
+        localityPixels = ((DataBufferInt) resized.getRaster().getDataBuffer()).getData();
+        fullRedraw = true;
+    }
+
+    /**
+     * Trace lane between {@code top} and {@code h}: one heat row each for reads, writes and swaps
+     * (log scale against the hottest index), then the locality scatter stretched to fill the rest.
+     */
+    private void paintTraceRange(Graphics2D g2, int x0, int x1, int top, int h) {
+        int w = bufferWidth;
+        int n = array.length;
+        g2.setColor(getBackground());
+        g2.fillRect(x0, top, x1 - x0, h - top);
+        g2.setColor(Color.DARK_GRAY);
+        g2.drawLine(x0, top, x1 - 1, top);
+
+        for (int k = 0; k < heatCounts.length; k++) {
+            int[] counts = heatCounts[k];
+            if (counts == null || counts.length != n)
+                break;
+            int y = top + 1 + k * HEAT_ROW_HEIGHT;
+            double scale = 255 / Math.log1p((1L << heatLevels[k]) - 1);
+            if (n > w) {
+                // Column mode: each pixel column shows the mean count of the elements it covers.
+                for (int c = x0; c < x1; c++) {
+                    int first = (int) (((long) c * n + w - 1) / w);
+                    int end = (int) (((long) (c + 1) * n + w - 1) / w);
+                    long sum = 0;
+                    for (int i = first; i < end; i++) sum += counts[i];
+                    g2.setColor(heatColour(sum / (double) Math.max(1, end - first), scale));
+                    g2.fillRect(c, y, 1, HEAT_ROW_HEIGHT - 1);
+                }
+            } else {
+                for (int i = elementAt(x0, n, w); i < n; i++) {
+                    int x = slotStart(i, n, w);
+                    if (x >= x1)
+                        break;
+                    g2.setColor(heatColour(counts[i], scale));
+                    g2.fillRect(x, y, slotStart(i + 1, n, w) - x, HEAT_ROW_HEIGHT - 1);
+                }
+            }
+        }
+
+        int scatterTop = top + 1 + heatCounts.length * HEAT_ROW_HEIGHT;
+        if (localityImage != null && localityImage.getWidth() == w && scatterTop < h) {
+            g2.drawImage(localityImage, x0, scatterTop, x1, h, x0, 0, x1, LOCALITY_ROWS, null);
+        }
+        g2.setClip(x0, top, x1 - x0, h - top);
+        g2.setFont(AUX_FONT);
+        g2.setColor(Color.LIGHT_GRAY);
+        g2.drawString("Index access over time (blue = read, orange = write)", 10, scatterTop + 14);
+        g2.setClip(null);
+    }
+
+    private static Color heatColour(double count, double scale) {
+        if (count <= 0)
+            return HEAT_PALETTE[0];
+        return HEAT_PALETTE[(int) Math.max(1, Math.min(255, Math.log1p(count) * scale))];
+    }
+
+    /**
+     * Level-of-detail view: each pixel column is solid up to the smallest value it holds, a dim
+     * band spans the range up to its largest value, and a bright tick marks the element touched last.
+     * Cost depends on the panel width, not on the array length.
+     */
+    private void paintColumns(Graphics2D g2, int x0, int x1, int mainH, int max) {
+        double scale = (mainH - 20) / (double) max;
+        int highlightColumnA = highlightA >= 0 && highlightA < array.length ? mainColumns.columnOf(highlightA) : -1;
+        int highlightColumnB = highlightB >= 0 && highlightB < array.length ? mainColumns.columnOf(highlightB) : -1;
+        for (int c = x0; c < x1; c++) {
+            int minH = (int) (mainColumns.min[c] * scale);
+            int maxH = (int) (mainColumns.max[c] * scale);
+            int lastVal = array[mainColumns.last[c]];
+            int lastH = (int) (lastVal * scale);
+
+            if (c == highlightColumnA || c == highlightColumnB) {
+                g2.setColor(Color.RED);
+                g2.fillRect(c, mainH - maxH, 1, maxH);
+                continue;
+            }
+            int colour = paletteIndex(lastVal);
+            g2.setColor(palette[colour]);
+            g2.fillRect(c, mainH - minH, 1, minH);
+            if (maxH > minH) {
+                g2.setColor(dimPalette[colour]);
+                g2.fillRect(c, mainH - maxH, 1, maxH - minH);
+            }
+            g2.setColor(Color.WHITE);
+            g2.fillRect(c, mainH - lastH - 1, 1, 2);
+        }
+    }
+}
+
+/* ---------------------------- Operation model ---------------------------- */
+enum OpType {
+    COMPARE, SWAP, OVERWRITE, MARK_FINAL, AUX_ALLOCATE, AUX_WRITE, AUX_CLEAR, BATCH
+}
+
+class Operation {
+    final OpType type;
+    final int i, j;
+    final int value;
+    final int codeLine;
+
+    private Operation(OpType type, int i, int j, int value, int codeLine) {
+        this.type = type;
+        this.i = i;
+        this.j = j;
+        this.value = value;
+        this.codeLine = codeLine;
+    }
+
+    public static Operation compare(int i, int j) {
+        return compare(i, j, -1);
+    }
+
+    public static Operation compare(int i, int j, int codeLine) {
+        return new Operation(OpType.COMPARE, i, j, 0, codeLine);
+    }
+
+    public static Operation swap(int i, int j) {
+        return swap(i, j, -1);
+    }
+
+    public static Operation swap(int i, int j, int codeLine) {
+        return new Operation(OpType.SWAP, i, j, 0, codeLine);
     }
 
     public static Operation overwrite(int i, int value) {
@@ -893,6 +1870,11 @@ class Operation {
     public static Operation auxClear() {
         return new Operation(OpType.AUX_CLEAR, -1, -1, 0, -1);
     }
+
+    /** Marks the next {@code size} operations as independent, to be played back in one frame. */
+    public static Operation batch(int size) {
+        return new Operation(OpType.BATCH, -1, -1, size, -1);
+    }
 }
 
 /* ---------------------------- Code Viewer ---------------------------- */
@@ -1009,7 +1991,14 @@ class CodeViewerDialog extends JDialog {
  */
 class OperationPlayer {
     private static final int FRAME_DELAY_MS = 16;
-    private static final int MAX_STEPS_PER_FRAME = 32;
+    // Time spent applying ops per frame; the rest of the 16 ms frame is left for painting.
+    private static final long FRAME_BUDGET_NANOS = 10_000_000L;
+    private static final int BUDGET_CHECK_INTERVAL = 1024; // ops between nanoTime() checks
+    // Frames with at least this many steps are fast-forwarded through an overlay instead of op by op.
+    private static final int COALESCE_MIN_STEPS = 32;
+    private static final long ACTIVE_FRAME_NANOS = 1_000_000_000L / 60;
+    private static final int FRAME_STATS_WINDOW = 240; // last four seconds at 60 fps
+    private static final int FRAME_STATS_REPORT_INTERVAL = 30;
 
     private final List<Operation> ops;
     private final VisualPanel panel;
@@ -1025,7 +2014,23 @@ class OperationPlayer {
     private int targetDelayMs;
     private long lastTickNanos;
     private double stepAccumulator = 0.0;
-    private boolean finishNotified = false;
+    private volatile boolean finishNotified = false;
+    private volatile boolean maxSpeed = false;
+
+    // Fast-forward overlay: values written this frame, valid where overlayStamp equals frameStamp.
+    private int[] overlayValue = new int[0];
+    private int[] overlayStamp = new int[0];
+    private int[] touched = new int[0];
+    private int touchedCount;
+    private int frameStamp;
+
+    // Active rendering replaces the Swing timer with a paced render thread that paints off the EDT.
+    private volatile boolean activeRendering = false;
+    private Thread renderThread;
+    private JLabel frameStatsLabel;
+    private final long[] frameTimes = new long[FRAME_STATS_WINDOW];
+    private final long[] frameTimesSorted = new long[FRAME_STATS_WINDOW];
+    private int frameCount;
 
     public OperationPlayer(List<Operation> ops,
             VisualPanel panel,
@@ -1053,6 +2058,8 @@ class OperationPlayer {
         cursor = 0;
         stepAccumulator = 0.0;
         finishNotified = false;
+        frameCount = 0;
+        panel.beginTrace(ops.size());
         lastTickNanos = System.nanoTime();
         playing.set(true);
         paused.set(false);
@@ -1066,44 +2073,230 @@ class OperationPlayer {
             return;
         }
 
-        timer.start();
+        if (activeRendering) {
+            renderThread = new Thread(this::renderLoop, "Render-Thread");
+            renderThread.setDaemon(true);
+            renderThread.start();
+        } else {
+            timer.start();
+        }
     }
 
     public void setDelay(int delayMs) {
         targetDelayMs = Math.max(1, delayMs);
     }
 
+    /** In max speed mode every frame applies as many ops as fit in its time budget and paints once. */
+    public void setMaxSpeed(boolean maxSpeed) {
+        this.maxSpeed = maxSpeed;
+        stepAccumulator = 0.0;
+    }
+
+    /** Must be set before {@link #start()}; also switches the panel's back buffer. */
+    public void setActiveRendering(boolean activeRendering) {
+        this.activeRendering = activeRendering;
+        panel.setActiveRendering(activeRendering);
+    }
+
+    /** Label that receives the p50/p99 interval between frames while playing. */
+    public void setFrameStatsLabel(JLabel frameStatsLabel) {
+        this.frameStatsLabel = frameStatsLabel;
+    }
+
     private void advanceFrame() {
         if (!playing.get() || paused.get())
             return;
 
+        Operation lastApplied = stepFrame();
+        if (lastApplied != null) {
+            panel.finishBatch();
+            if (stepListener != null) {
+                stepListener.accept(lastApplied);
+            }
+        }
+
+        if (cursor >= ops.size()) {
+            finishPlayback();
+        }
+    }
+
+    /** Active rendering loop: applies and presents one frame per tick at a fixed pace. */
+    private void renderLoop() {
+        long nextFrame = System.nanoTime();
+        while (playing.get()) {
+            if (!paused.get()) {
+                Operation lastApplied;
+                synchronized (panel.renderLock) {
+                    lastApplied = stepFrame();
+                }
+                panel.renderActive();
+                if (lastApplied != null && stepListener != null) {
+                    SwingUtilities.invokeLater(() -> {
+                        if (!finishNotified)
+                            stepListener.accept(lastApplied);
+                    });
+                }
+                if (cursor >= ops.size()) {
+                    SwingUtilities.invokeLater(() -> {
+                        if (playing.get())
+                            finishPlayback();
+                    });
+                    return;
+                }
+            }
+            nextFrame += ACTIVE_FRAME_NANOS;
+            long wait = nextFrame - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                nextFrame = System.nanoTime(); // behind schedule: skip ahead instead of bursting
+            }
+        }
+    }
+
+    /** Applies this frame's share of operations; returns the last one applied, or null if none were due. */
+    private Operation stepFrame() {
         long now = System.nanoTime();
+        recordFrameTime(now - lastTickNanos);
         double elapsedMs = (now - lastTickNanos) / 1_000_000.0;
         lastTickNanos = now;
-        stepAccumulator += elapsedMs / targetDelayMs;
 
-        int stepsThisFrame = Math.min(MAX_STEPS_PER_FRAME, (int) stepAccumulator);
-        if (stepsThisFrame <= 0)
-            return;
+        long stepsThisFrame;
+        if (maxSpeed) {
+            stepsThisFrame = Long.MAX_VALUE;
+        } else {
+            stepAccumulator += elapsedMs / targetDelayMs;
+            stepsThisFrame = (long) stepAccumulator;
+            if (stepsThisFrame <= 0)
+                return null;
+            stepAccumulator -= stepsThisFrame;
+        }
+
+        long deadline = now + FRAME_BUDGET_NANOS;
+        return stepsThisFrame >= COALESCE_MIN_STEPS
+                ? fastForward(stepsThisFrame, deadline)
+                : applySteps(stepsThisFrame);
+    }
 
-        stepAccumulator -= stepsThisFrame;
+    private void recordFrameTime(long nanos) {
+        frameTimes[frameCount++ % FRAME_STATS_WINDOW] = nanos;
+        JLabel label = frameStatsLabel;
+        if (label == null || frameCount % FRAME_STATS_REPORT_INTERVAL != 0)
+            return;
+        int count = Math.min(frameCount, FRAME_STATS_WINDOW);
+        System.arraycopy(frameTimes, 0, frameTimesSorted, 0, count);
+        Arrays.sort(frameTimesSorted, 0, count);
+        String text = String.format("Frame p50 %.1f ms · p99 %.1f ms (%s)",
+                frameTimesSorted[count / 2] / 1_000_000.0,
+                frameTimesSorted[Math.min(count - 1, count * 99 / 100)] / 1_000_000.0,
+                activeRendering ? "active" : "timer");
+        SwingUtilities.invokeLater(() -> label.setText(text));
+    }
 
+    private Operation applySteps(long steps) {
         Operation lastApplied = null;
-        for (int i = 0; i < stepsThisFrame && cursor < ops.size(); i++) {
+        for (long i = 0; i < steps && cursor < ops.size(); i++) {
             lastApplied = ops.get(cursor++);
             panel.applyOperation(lastApplied, false);
+            if (lastApplied.type == OpType.BATCH) {
+                // A batch counts as a single step so the whole stage lands in this frame.
+                int batchEnd = Math.min(ops.size(), cursor + lastApplied.value);
+                while (cursor < batchEnd) {
+                    lastApplied = ops.get(cursor++);
+                    panel.applyOperation(lastApplied, false);
+                }
+            }
         }
+        return lastApplied;
+    }
 
-        if (lastApplied != null) {
-            panel.finishBatch();
-            if (stepListener != null) {
-                stepListener.accept(lastApplied);
+    /**
+     * Applies up to {@code steps} ops with only the frame's end state reaching the panel:
+     * compares and final marks are skipped, swaps and overwrites land in an overlay so repeated
+     * writes and swap chains collapse to one write per touched index, and only the last op's
+     * highlights are shown. Aux ops are cheap and applied directly.
+     */
+    private Operation fastForward(long steps, long deadline) {
+        int n = panel.length();
+        if (overlayValue.length != n) {
+            overlayValue = new int[n];
+            overlayStamp = new int[n];
+            touched = new int[n];
+            frameStamp = 0;
+        }
+        if (++frameStamp == 0) {
+            Arrays.fill(overlayStamp, 0);
+            frameStamp = 1;
+        }
+        touchedCount = 0;
+
+        Operation lastApplied = null;
+        Operation lastHighlight = null;
+        int batchEnd = -1;
+        long applied = 0;
+        boolean tracing = panel.isShowingHeatmap();
+        while (cursor < ops.size()) {
+            if (cursor >= batchEnd) {
+                // A batch counts as a single step so the whole stage lands in this frame.
+                if (applied >= steps)
+                    break;
+                applied++;
+                if (applied % BUDGET_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                    stepAccumulator = 0.0; // drop the backlog rather than fall further behind
+                    break;
+                }
+            }
+            Operation op = ops.get(cursor++);
+            lastApplied = op;
+            boolean auxOp = op.type == OpType.AUX_ALLOCATE || op.type == OpType.AUX_WRITE || op.type == OpType.AUX_CLEAR;
+            if (tracing && !auxOp)
+                panel.traceOperation(op); // aux ops are traced by applyOperation below
+            switch (op.type) {
+                case SWAP: {
+                    int vi = overlayGet(op.i);
+                    overlayPut(op.i, overlayGet(op.j));
+                    overlayPut(op.j, vi);
+                    lastHighlight = op;
+                    break;
+                }
+                case OVERWRITE:
+                    overlayPut(op.i, op.value);
+                    lastHighlight = op;
+                    break;
+                case COMPARE:
+                case MARK_FINAL:
+                    lastHighlight = op;
+                    break;
+                case BATCH:
+                    batchEnd = Math.min(ops.size(), cursor + op.value);
+                    break;
+                default:
+                    panel.applyOperation(op, false);
+                    break;
             }
         }
 
-        if (cursor >= ops.size()) {
-            finishPlayback();
+        for (int t = 0; t < touchedCount; t++) {
+            int i = touched[t];
+            panel.writeValue(i, overlayValue[i]);
+        }
+        if (lastHighlight != null) {
+            boolean pair = lastHighlight.type == OpType.COMPARE || lastHighlight.type == OpType.SWAP;
+            panel.highlight(lastHighlight.i, pair ? lastHighlight.j : -1);
+        }
+        return lastApplied;
+    }
+
+    private int overlayGet(int i) {
+        return overlayStamp[i] == frameStamp ? overlayValue[i] : panel.valueAt(i);
+    }
+
+    private void overlayPut(int i, int value) {
+        if (overlayStamp[i] != frameStamp) {
+            overlayStamp[i] = frameStamp;
+            touched[touchedCount++] = i;
         }
+        overlayValue[i] = value;
     }
 
     public void pause() {
@@ -1111,8 +2304,9 @@ class OperationPlayer {
     }
 
     public void resume() {
-        paused.set(false);
+        // Restart the clock before unpausing: the volatile write to paused publishes it to the render thread.
         lastTickNanos = System.nanoTime();
+        paused.set(false);
     }
 
     public boolean isPaused() {
@@ -1127,6 +2321,14 @@ class OperationPlayer {
         playing.set(false);
         paused.set(false);
         timer.stop();
+        Thread thread = renderThread;
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(); // at most one frame; the panel is reset right after this
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
         notifyFinished();
     }
 
@@ -1155,6 +2357,196 @@ class OperationPlayer {
     }
 }
 
+/**
+ * Renders a recorded operation trace offline into a PNG sequence or an animated GIF at a fixed
+ * frame rate and resolution. Frames are drawn in order by a VisualPanel that is never shown;
+ * encoding (PNG compression, GIF palette reduction) runs on a thread pool so a 10^5-step trace
+ * exports much faster than it would play.
+ */
+class FrameExporter {
+    static final int DEFAULT_FPS = 30;
+    static final int DEFAULT_WIDTH = 960;
+    static final int DEFAULT_HEIGHT = 540;
+    static final int DEFAULT_SECONDS = 10;
+
+    private final int width;
+    private final int height;
+    private final int fps;
+    private final int threads;
+
+    static final class Report {
+        int frames;
+        int ops;
+        long stepsPerFrame;
+        long bytesWritten;
+        long timeNanos;
+        double fps;
+
+        @Override
+        public String toString() {
+            double seconds = timeNanos / 1_000_000_000.0;
+            return String.format(Locale.US,
+                    "Exported %d frames (%d ops, %d per frame) in %.3f ms: %.1f MB written, %.1fx real time",
+                    frames, ops, stepsPerFrame, timeNanos / 1_000_000.0, bytesWritten / 1_048_576.0,
+                    frames / fps / Math.max(seconds, 1e-9));
+        }
+    }
+
+    FrameExporter(int width, int height, int fps, int threads) {
+        if (width < 1 || height < 1 || fps < 1 || threads < 1) {
+            throw new IllegalArgumentException("Frame size, frame rate and thread count must be positive.");
+        }
+        this.width = width;
+        this.height = height;
+        this.fps = fps;
+        this.threads = threads;
+    }
+
+    /** Steps per frame that fit {@code ops} into roughly {@code seconds} of animation. */
+    long stepsFor(int ops, int seconds) {
+        long frames = Math.max(1L, (long) fps * seconds);
+        return Math.max(1L, (ops + frames - 1) / frames);
+    }
+
+    /**
+     * Writes one frame for the initial array and one after every {@code stepsPerFrame} ops. An
+     * output ending in ".gif" becomes an animated GIF; anything else is a directory of PNGs.
+     */
+    public Report export(int[] input, List<Operation> ops, long stepsPerFrame, Path output) throws IOException {
+        long startNanos = System.nanoTime();
+        boolean gif = output.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gif");
+        Report report = new Report();
+        report.ops = ops.size();
+        report.stepsPerFrame = Math.max(1L, stepsPerFrame);
+        report.fps = fps;
+
+        VisualPanel panel = new VisualPanel();
+        panel.setSize(width, height);
+        panel.setCustomArray(input);
+
+        javax.imageio.ImageWriter gifWriter = null;
+        javax.imageio.stream.ImageOutputStream gifOut = null;
+        javax.imageio.metadata.IIOMetadata gifMetadata = null;
+        if (gif) {
+            gifWriter = javax.imageio.ImageIO.getImageWritersByFormatName("gif").next();
+            Path parent = output.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            Files.deleteIfExists(output);
+            gifOut = javax.imageio.ImageIO.createImageOutputStream(output.toFile());
+            if (gifOut == null) throw new IOException("Cannot open " + output + " for writing.");
+            gifWriter.setOutput(gifOut);
+            gifWriter.prepareWriteSequence(null);
+            gifMetadata = gifFrameMetadata(gifWriter);
+        } else {
+            Files.createDirectories(output);
+        }
+
+        // Frames must be drawn in order; encoding is parallel but bounded so memory stays flat.
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(threads);
+        ArrayDeque<java.util.concurrent.Future<Object>> pending = new ArrayDeque<>();
+        int maxPending = threads * 2;
+        try {
+            int cursor = 0;
+            for (int frame = 0; ; frame++) {
+                if (frame > 0) {
+                    for (long step = 0; step < report.stepsPerFrame && cursor < ops.size(); step++) {
+                        panel.applyOperation(ops.get(cursor++), false);
+                    }
+                    if (cursor >= ops.size()) panel.resetHighlights();
+                }
+                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = image.createGraphics();
+                panel.renderTo(g);
+                g.dispose();
+
+                Path framePath = output.resolve(String.format(Locale.ROOT, "frame_%05d.png", frame));
+                pending.add(pool.submit(gif ? () -> toIndexed(image) : () -> writePng(image, framePath)));
+                report.frames++;
+                while (pending.size() >= maxPending) {
+                    report.bytesWritten += collect(pending.removeFirst(), gifWriter, gifMetadata);
+                }
+                if (cursor >= ops.size())
+                    break;
+            }
+            while (!pending.isEmpty()) {
+                report.bytesWritten += collect(pending.removeFirst(), gifWriter, gifMetadata);
+            }
+            if (gif) {
+                gifWriter.endWriteSequence();
+                gifOut.flush();
+                report.bytesWritten = gifOut.length();
+            }
+        } finally {
+            pool.shutdownNow();
+            if (gifWriter != null) gifWriter.dispose();
+            if (gifOut != null) gifOut.close();
+        }
+        report.timeNanos = System.nanoTime() - startNanos;
+        return report;
+    }
+
+    /** Waits for a frame's encoding; GIF frames are appended here, in order. Returns PNG bytes written. */
+    private static long collect(java.util.concurrent.Future<Object> future, javax.imageio.ImageWriter gifWriter,
+            javax.imageio.metadata.IIOMetadata gifMetadata) throws IOException {
+        Object encoded;
+        try {
+            encoded = future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Frame export interrupted.", ex);
+        } catch (java.util.concurrent.ExecutionException ex) {
+            throw new IOException("Frame encoding failed.", ex.getCause());
+        }
+        if (gifWriter == null)
+            return (Long) encoded;
+        gifWriter.writeToSequence(new javax.imageio.IIOImage((BufferedImage) encoded, null, gifMetadata), null);
+        return 0;
+    }
+
+    private static Object writePng(BufferedImage image, Path path) throws IOException {
+        if (!javax.imageio.ImageIO.write(image, "png", path.toFile())) {
+            throw new IOException("No PNG writer available.");
+        }
+        return Files.size(path);
+    }
+
+    /** Reduces a frame to the default 256-colour palette, the expensive part of GIF encoding. */
+    private static Object toIndexed(BufferedImage image) {
+        BufferedImage indexed = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_INDEXED);
+        Graphics2D g = indexed.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return indexed;
+    }
+
+    /** Per-frame delay plus the NETSCAPE2.0 extension that makes the animation loop forever. */
+    private javax.imageio.metadata.IIOMetadata gifFrameMetadata(javax.imageio.ImageWriter writer) throws IOException {
+        javax.imageio.metadata.IIOMetadata metadata = writer.getDefaultImageMetadata(
+                javax.imageio.ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_BYTE_INDEXED), null);
+        String format = metadata.getNativeMetadataFormatName();
+        javax.imageio.metadata.IIOMetadataNode root = (javax.imageio.metadata.IIOMetadataNode) metadata.getAsTree(format);
+
+        javax.imageio.metadata.IIOMetadataNode control = new javax.imageio.metadata.IIOMetadataNode("GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", String.valueOf(Math.max(1, Math.round(100f / fps)))); // centiseconds
+        control.setAttribute("transparentColorIndex", "0");
+        root.appendChild(control);
+
+        javax.imageio.metadata.IIOMetadataNode extensions = new javax.imageio.metadata.IIOMetadataNode("ApplicationExtensions");
+        javax.imageio.metadata.IIOMetadataNode loop = new javax.imageio.metadata.IIOMetadataNode("ApplicationExtension");
+        loop.setAttribute("applicationID", "NETSCAPE");
+        loop.setAttribute("authenticationCode", "2.0");
+        loop.setUserObject(new byte[] { 1, 0, 0 });
+        extensions.appendChild(loop);
+        root.appendChild(extensions);
+
+        metadata.setFromTree(format, root);
+        return metadata;
+    }
+}
+
 /*
  * ---------------------------- Sorting algorithms that record operations
  * ----------------------------
@@ -1170,7 +2562,7 @@ class SortingAlgorithms {
         for (int i = 0; i < n - 1; i++) {
             swapped = false;
             for (int j = 0; j < n - 1 - i; j++) {
-                if (a.getVisualCompare(j, j + 1, compareLine) > 0) {
+                if (a.branch(a.getVisualCompare(j, j + 1, compareLine) > 0, compareLine)) {
                     a.swap(j, j + 1, swapLine);
                     swapped = true;
                 }
@@ -1193,7 +2585,7 @@ class SortingAlgorithms {
         for (int i = 0; i < n - 1; i++) {
             int minIdx = i;
             for (int j = i + 1; j < n; j++) {
-                if (a.getVisualCompare(j, minIdx, compareLine) < 0)
+                if (a.branch(a.getVisualCompare(j, minIdx, compareLine) < 0, compareLine))
                     minIdx = j;
             }
             if (minIdx != i) {
@@ -1217,7 +2609,7 @@ class SortingAlgorithms {
             while (j >= 0) {
                 a.compareVisual(j, j + 1, compareLine);
                 metrics.comparisons++;
-                if (a.get(j) > key) {
+                if (a.branch(a.get(j) > key, compareLine)) {
                     a.setVisual(j + 1, a.get(j), shiftLine); // includes read and write implicitly visually
                     j--;
                 } else {
@@ -1250,7 +2642,7 @@ class SortingAlgorithms {
         while (i <= m && j <= r) {
             a.compareVisual(i, j, compareLine);
             a.metrics.comparisons++;
-            if (a.get(i) <= a.get(j)) {
+            if (a.branch(a.get(i) <= a.get(j), compareLine)) {
                 tmp[k] = a.get(i++);
                 a.writeAux(k, tmp[k]);
                 k++;
@@ -1301,7 +2693,7 @@ class SortingAlgorithms {
         for (int j = low; j < high; j++) {
             a.compareVisual(j, high, compareLine);
             a.metrics.comparisons++;
-            if (a.get(j) < pivot) {
+            if (a.branch(a.get(j) < pivot, compareLine)) {
                 a.swap(i, j, swapLine);
                 i++;
             }
@@ -1335,12 +2727,12 @@ class SortingAlgorithms {
         if (l < n) {
             a.compareVisual(l, largest, leftCompareLine);
             a.metrics.comparisons++;
-            if (a.get(l) > a.get(largest)) largest = l;
+            if (a.branch(a.get(l) > a.get(largest), leftCompareLine)) largest = l;
         }
         if (r < n) {
             a.compareVisual(r, largest, rightCompareLine);
             a.metrics.comparisons++;
-            if (a.get(r) > a.get(largest)) largest = r;
+            if (a.branch(a.get(r) > a.get(largest), rightCompareLine)) largest = r;
         }
         if (largest != i) {
             a.swap(i, largest, swapLine);
@@ -1362,7 +2754,7 @@ class SortingAlgorithms {
                 while (j >= gap) {
                     a.compareVisual(j - gap, j, compareLine);
                     a.metrics.comparisons++;
-                    if (a.get(j - gap) > key) {
+                    if (a.branch(a.get(j - gap) > key, compareLine)) {
                         a.setVisual(j, a.get(j - gap), shiftLine);
                         j -= gap;
                     } else {
@@ -1372,53 +2764,2161 @@ class SortingAlgorithms {
                 a.setVisual(j, key, insertLine);
             }
         }
-        for (int k = 0; k < n; k++) a.markFinal(k);
+        for (int k = 0; k < n; k++) a.markFinal(k);
+    }
+
+    public static void radixSort(int[] array, List<Operation> ops, SortMetrics metrics) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        if (a.length() == 0) return;
+
+        int max = a.get(0);
+        for (int i = 1; i < a.length(); i++) {
+            a.metrics.comparisons++; // logical comparison
+            if (a.get(i) > max) max = a.get(i);
+        }
+
+        for (int exp = 1; max / exp > 0; exp *= 10) {
+            countingSortForRadix(a, exp);
+        }
+        for (int k = 0; k < a.length(); k++) a.markFinal(k);
+    }
+
+    private static void countingSortForRadix(TrackedArray a, int exp) {
+        int n = a.length();
+        a.allocateAux(n); // Output array
+        int[] output = new int[n];
+        int[] count = new int[10];
+        final int overwriteLine = 7;
+
+        for (int i = 0; i < n; i++) count[(a.get(i) / exp) % 10]++;
+        for (int i = 1; i < 10; i++) count[i] += count[i - 1];
+
+        for (int i = n - 1; i >= 0; i--) {
+            int digit = (a.get(i) / exp) % 10;
+            output[count[digit] - 1] = a.get(i);
+            a.writeAux(count[digit] - 1, output[count[digit] - 1]); // auxiliary array write
+            count[digit]--;
+        }
+
+        for (int i = 0; i < n; i++) {
+            a.setVisual(i, output[i], overwriteLine); // writes array implicitly
+        }
+        a.clearAux(n);
+    }
+
+    /**
+     * LSD radix sort on whole bytes. Keys are biased by flipping the sign bit so
+     * negative values order before positive ones, all four histograms are built in
+     * a single pre-pass, and passes whose byte is identical for every key are skipped.
+     */
+    public static void radixSortLsd256(int[] array, List<Operation> ops, SortMetrics metrics) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        int n = a.length();
+        if (n == 0) return;
+        final int copyBackLine = 10;
+
+        int[][] counts = new int[4][256];
+        for (int i = 0; i < n; i++) {
+            int key = a.get(i) ^ Integer.MIN_VALUE;
+            counts[0][key & 0xFF]++;
+            counts[1][(key >>> 8) & 0xFF]++;
+            counts[2][(key >>> 16) & 0xFF]++;
+            counts[3][key >>> 24]++;
+        }
+
+        a.allocateAux(n);
+        int[] buffer = new int[n];
+        for (int pass = 0; pass < 4; pass++) {
+            int shift = pass * 8;
+            int[] count = counts[pass];
+            if (count[((a.get(0) ^ Integer.MIN_VALUE) >>> shift) & 0xFF] == n) continue;
+
+            int sum = 0;
+            for (int b = 0; b < 256; b++) {
+                int c = count[b];
+                count[b] = sum;
+                sum += c;
+            }
+
+            for (int i = 0; i < n; i++) {
+                int value = a.get(i);
+                int pos = count[((value ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++;
+                buffer[pos] = value;
+                a.writeAux(pos, value);
+            }
+            for (int i = 0; i < n; i++) {
+                a.setVisual(i, buffer[i], copyBackLine);
+            }
+        }
+        a.clearAux(n);
+        for (int k = 0; k < n; k++) a.markFinal(k);
+    }
+
+    private static final int FLAG_SORT_INSERTION_THRESHOLD = 32;
+
+    /**
+     * In-place MSD radix sort (American flag sort). Each level permutes its range
+     * into 256 buckets by swapping elements along cycles, so only the per-level
+     * bucket counters are allocated and no O(N) auxiliary array is needed.
+     */
+    public static void americanFlagSort(int[] array, List<Operation> ops, SortMetrics metrics) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        americanFlagSortRec(a, 0, a.length(), 24);
+        for (int k = 0; k < a.length(); k++) a.markFinal(k);
+    }
+
+    private static void americanFlagSortRec(TrackedArray a, int lo, int hi, int shift) {
+        final int insertionLine = 2;
+        final int swapLine = 9;
+
+        if (hi - lo <= FLAG_SORT_INSERTION_THRESHOLD) {
+            insertionSortRange(a, lo, hi, insertionLine, insertionLine);
+            return;
+        }
+
+        int[] count = new int[256];
+        for (int i = lo; i < hi; i++) count[flagDigit(a.get(i), shift)]++;
+
+        int[] next = new int[256];
+        int[] end = new int[256];
+        int sum = lo;
+        for (int b = 0; b < 256; b++) {
+            next[b] = sum;
+            sum += count[b];
+            end[b] = sum;
+        }
+
+        for (int b = 0; b < 256; b++) {
+            if (count[b] == hi - lo) break; // single bucket, nothing to permute
+            while (next[b] < end[b]) {
+                int digit = flagDigit(a.get(next[b]), shift);
+                if (digit == b) {
+                    next[b]++;
+                } else {
+                    a.swap(next[b], next[digit]++, swapLine);
+                }
+            }
+        }
+
+        if (shift == 0) return;
+        for (int b = 0; b < 256; b++) {
+            if (count[b] > 1) {
+                americanFlagSortRec(a, end[b] - count[b], end[b], shift - 8);
+            }
+        }
+    }
+
+    private static int flagDigit(int value, int shift) {
+        return ((value ^ Integer.MIN_VALUE) >>> shift) & 0xFF;
+    }
+
+    private static void insertionSortRange(TrackedArray a, int lo, int hi, int compareLine, int shiftLine) {
+        for (int i = lo + 1; i < hi; i++) {
+            int key = a.get(i);
+            int j = i - 1;
+            while (j >= lo) {
+                a.compareVisual(j, j + 1, compareLine);
+                a.metrics.comparisons++;
+                if (a.branch(a.get(j) > key, compareLine)) {
+                    a.setVisual(j + 1, a.get(j), shiftLine);
+                    j--;
+                } else {
+                    break;
+                }
+            }
+            if (j + 1 != i) a.setVisual(j + 1, key, shiftLine);
+        }
+    }
+
+    private static final int PARALLEL_MIN_CHUNK = 1 << 14;
+
+    public static void parallelRadixSort(int[] array, List<Operation> ops, SortMetrics metrics) {
+        parallelRadixSort(array, ops, metrics, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Base-256 LSD radix sort split across {@code threads} workers. Every pass builds
+     * per-worker histograms of each worker's chunk in parallel, prefix-sums them into
+     * per-worker bucket offsets, then scatters and copies back in parallel. When nothing
+     * watches individual reads, the histograms come from {@link SortKernels#ACTIVE}.
+     */
+    public static void parallelRadixSort(int[] array, List<Operation> ops, SortMetrics metrics, int threads) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        int n = a.length();
+        if (n == 0) return;
+        final int copyBackLine = 9;
+        final boolean rawHistogram = ops == null && metrics.cache == null;
+
+        int workers = Math.max(1, Math.min(threads, n / PARALLEL_MIN_CHUNK));
+        int[] chunkStart = new int[workers + 1];
+        for (int w = 0; w <= workers; w++) chunkStart[w] = (int) ((long) n * w / workers);
+
+        java.util.concurrent.ExecutorService pool = workers > 1
+                ? java.util.concurrent.Executors.newFixedThreadPool(workers)
+                : null;
+        try {
+            a.allocateAux(n);
+            int[] buffer = new int[n];
+            int[][] histograms = new int[workers][256];
+
+            for (int pass = 0; pass < 4; pass++) {
+                final int shift = pass * 8;
+
+                runWorkers(pool, workers, array, ops, metrics, (w, t) -> {
+                    int[] hist = histograms[w];
+                    Arrays.fill(hist, 0);
+                    if (rawHistogram) {
+                        SortKernels.ACTIVE.histogram(array, chunkStart[w], chunkStart[w + 1], shift, hist);
+                        t.metrics.arrayReads += chunkStart[w + 1] - chunkStart[w];
+                        return;
+                    }
+                    for (int i = chunkStart[w]; i < chunkStart[w + 1]; i++) {
+                        hist[flagDigit(t.get(i), shift)]++;
+                    }
+                });
+
+                boolean identityPass = false;
+                int sum = 0;
+                for (int b = 0; b < 256 && !identityPass; b++) {
+                    int bucketStart = sum;
+                    for (int w = 0; w < workers; w++) {
+                        int c = histograms[w][b];
+                        histograms[w][b] = sum;
+                        sum += c;
+                    }
+                    identityPass = sum - bucketStart == n;
+                }
+                if (identityPass) continue;
+
+                runWorkers(pool, workers, array, ops, metrics, (w, t) -> {
+                    int[] offset = histograms[w];
+                    for (int i = chunkStart[w]; i < chunkStart[w + 1]; i++) {
+                        int value = t.get(i);
+                        int pos = offset[flagDigit(value, shift)]++;
+                        buffer[pos] = value;
+                        t.writeAux(pos, value);
+                    }
+                });
+
+                runWorkers(pool, workers, array, ops, metrics, (w, t) -> {
+                    for (int i = chunkStart[w]; i < chunkStart[w + 1]; i++) {
+                        t.setVisual(i, buffer[i], copyBackLine);
+                    }
+                });
+            }
+            a.clearAux(n);
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+        for (int k = 0; k < n; k++) a.markFinal(k);
+    }
+
+    private static final int COUNTING_SORT_MIN_TABLE = 1 << 16;
+
+    public static void countingSort(int[] array, List<Operation> ops, SortMetrics metrics) {
+        countingSort(array, ops, metrics, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Counting sort over the detected key range. Each counting worker counts its own chunk, and
+     * the output is rewritten in parallel by position. Ranges wider than max(N, 64K) keys would
+     * make the table dominate, so those inputs fall back to LSD radix sort. Only as many workers
+     * count as keep their tables within N entries together, so wide ranges count on one table.
+     */
+    public static void countingSort(int[] array, List<Operation> ops, SortMetrics metrics, int threads) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        int n = a.length();
+        if (n == 0) return;
+        final int writeLine = 10;
+
+        int workers = Math.max(1, Math.min(threads, n / PARALLEL_MIN_CHUNK));
+        int[] chunkStart = new int[workers + 1];
+        for (int w = 0; w <= workers; w++) chunkStart[w] = (int) ((long) n * w / workers);
+
+        java.util.concurrent.ExecutorService pool = workers > 1
+                ? java.util.concurrent.Executors.newFixedThreadPool(workers)
+                : null;
+        try {
+            int[] bounds = detectRange(pool, workers, chunkStart, array, ops, metrics);
+            int min = bounds[0];
+            long range = (long) bounds[1] - min + 1;
+            if (range > Math.max(n, COUNTING_SORT_MIN_TABLE)) {
+                radixSortLsd256(array, ops, metrics);
+                return;
+            }
+
+            int keys = (int) range;
+            int countWorkers = Math.max(1, Math.min(workers, n / keys));
+            int[] countStart = new int[countWorkers + 1];
+            for (int w = 0; w <= countWorkers; w++) countStart[w] = (int) ((long) n * w / countWorkers);
+
+            long tableSpace = (long) countWorkers * keys + keys + 1;
+            a.allocateAux((int) tableSpace);
+            int[][] counts = new int[countWorkers][keys];
+            runWorkers(pool, countWorkers, array, ops, metrics, (w, t) -> {
+                int[] count = counts[w];
+                for (int i = countStart[w]; i < countStart[w + 1]; i++) {
+                    int value = t.get(i);
+                    if (count[value - min]++ == 0) t.writeAux(value - min, value);
+                }
+            });
+
+            int[] start = new int[keys + 1];
+            for (int k = 0; k < keys; k++) {
+                int total = 0;
+                for (int w = 0; w < countWorkers; w++) total += counts[w][k];
+                start[k + 1] = start[k] + total;
+            }
+
+            runWorkers(pool, workers, array, ops, metrics, (w, t) -> {
+                int key = upperBound(start, chunkStart[w]) - 1;
+                for (int i = chunkStart[w]; i < chunkStart[w + 1]; i++) {
+                    while (start[key + 1] <= i) key++;
+                    t.setVisual(i, key + min, writeLine);
+                }
+            });
+            a.clearAux((int) tableSpace);
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+        for (int k = 0; k < n; k++) a.markFinal(k);
+    }
+
+    private static final int BUCKET_SORT_LOAD = 4;
+    private static final int BUCKET_SORT_INSERTION_LIMIT = 64;
+
+    public static void bucketSort(int[] array, List<Operation> ops, SortMetrics metrics) {
+        bucketSort(array, ops, metrics, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Bucket sort with N / 4 equal-width buckets over the detected range, built with per-worker
+     * histograms like {@link #parallelRadixSort}. Small buckets are insertion sorted and
+     * oversized ones, which only skewed inputs produce, are bucket sorted again over their own range.
+     */
+    public static void bucketSort(int[] array, List<Operation> ops, SortMetrics metrics, int threads) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        int n = a.length();
+        if (n == 0) return;
+        final int copyBackLine = 7;
+
+        int workers = Math.max(1, Math.min(threads, n / PARALLEL_MIN_CHUNK));
+        int[] chunkStart = new int[workers + 1];
+        for (int w = 0; w <= workers; w++) chunkStart[w] = (int) ((long) n * w / workers);
+
+        java.util.concurrent.ExecutorService pool = workers > 1
+                ? java.util.concurrent.Executors.newFixedThreadPool(workers)
+                : null;
+        try {
+            int[] bounds = detectRange(pool, workers, chunkStart, array, ops, metrics);
+            int min = bounds[0];
+            long range = (long) bounds[1] - min + 1;
+            int buckets = (int) Math.max(1, Math.min(range, n / BUCKET_SORT_LOAD));
+
+            a.allocateAux(n);
+            int[] buffer = new int[n];
+            int[][] histograms = new int[workers][buckets];
+            runWorkers(pool, workers, array, ops, metrics, (w, t) -> {
+                int[] hist = histograms[w];
+                for (int i = chunkStart[w]; i < chunkStart[w + 1]; i++) {
+                    hist[bucketOf(t.get(i), min, range, buckets)]++;
+                }
+            });
+
+            int[] bucketStart = new int[buckets + 1];
+            int sum = 0;
+            for (int b = 0; b < buckets; b++) {
+                bucketStart[b] = sum;
+                for (int w = 0; w < workers; w++) {
+                    int c = histograms[w][b];
+                    histograms[w][b] = sum;
+                    sum += c;
+                }
+            }
+            bucketStart[buckets] = n;
+
+            runWorkers(pool, workers, array, ops, metrics, (w, t) -> {
+                int[] offset = histograms[w];
+                for (int i = chunkStart[w]; i < chunkStart[w + 1]; i++) {
+                    int value = t.get(i);
+                    int pos = offset[bucketOf(value, min, range, buckets)]++;
+                    buffer[pos] = value;
+                    t.writeAux(pos, value);
+                }
+            });
+
+            // Each worker copies back and sorts the buckets that start inside its chunk.
+            runWorkers(pool, workers, array, ops, metrics, (w, t) -> {
+                int first = upperBound(bucketStart, chunkStart[w] - 1);
+                int last = upperBound(bucketStart, chunkStart[w + 1] - 1);
+                if (first >= last) return;
+                for (int i = bucketStart[first]; i < bucketStart[last]; i++) {
+                    t.setVisual(i, buffer[i], copyBackLine);
+                }
+                for (int b = first; b < last; b++) {
+                    sortBucket(t, bucketStart[b], bucketStart[b + 1], buffer);
+                }
+            });
+            a.clearAux(n);
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+        for (int k = 0; k < n; k++) a.markFinal(k);
+    }
+
+    private static void sortBucket(TrackedArray a, int lo, int hi, int[] buffer) {
+        final int insertionLine = 9;
+        final int rescatterLine = 10;
+        if (hi - lo <= BUCKET_SORT_INSERTION_LIMIT) {
+            insertionSortRange(a, lo, hi, insertionLine, insertionLine);
+            return;
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = lo; i < hi; i++) {
+            int value = a.get(i);
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+        if (min == max) return;
+
+        long range = (long) max - min + 1;
+        int buckets = (int) Math.min(range, (hi - lo) / BUCKET_SORT_LOAD);
+        int[] bucketStart = new int[buckets + 1];
+        for (int i = lo; i < hi; i++) bucketStart[bucketOf(a.get(i), min, range, buckets) + 1]++;
+        bucketStart[0] = lo;
+        for (int b = 0; b < buckets; b++) bucketStart[b + 1] += bucketStart[b];
+
+        int[] next = Arrays.copyOf(bucketStart, buckets);
+        for (int i = lo; i < hi; i++) {
+            int value = a.get(i);
+            int pos = next[bucketOf(value, min, range, buckets)]++;
+            buffer[pos] = value;
+            a.writeAux(pos, value);
+        }
+        for (int i = lo; i < hi; i++) a.setVisual(i, buffer[i], rescatterLine);
+        for (int b = 0; b < buckets; b++) sortBucket(a, bucketStart[b], bucketStart[b + 1], buffer);
+    }
+
+    private static int bucketOf(int value, int min, long range, int buckets) {
+        return (int) (((long) value - min) * buckets / range);
+    }
+
+    /** First index in the ascending {@code sorted} whose entry is greater than {@code key}. */
+    private static int upperBound(int[] sorted, int key) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Parallel min/max scan; returns {min, max}. */
+    private static int[] detectRange(java.util.concurrent.ExecutorService pool, int workers, int[] chunkStart,
+            int[] array, List<Operation> ops, SortMetrics metrics) {
+        int[] mins = new int[workers];
+        int[] maxs = new int[workers];
+        runWorkers(pool, workers, array, ops, metrics, (w, t) -> {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = chunkStart[w]; i < chunkStart[w + 1]; i++) {
+                int value = t.get(i);
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+            mins[w] = min;
+            maxs[w] = max;
+        });
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int w = 0; w < workers; w++) {
+            min = Math.min(min, mins[w]);
+            max = Math.max(max, maxs[w]);
+        }
+        return new int[] {min, max};
+    }
+
+    private static final int SAMPLE_SORT_BUCKETS = 16; // power of two, leaves of the splitter tree
+    private static final int SAMPLE_SORT_OVERSAMPLING = 8;
+    private static final int SAMPLE_SORT_BASE_CASE = 32;
+
+    public static void sampleSort(int[] array, List<Operation> ops, SortMetrics metrics) {
+        sampleSort(array, ops, metrics, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Sample sort: splitters are chosen from an oversampled random sample, every
+     * element is classified by descending an implicit (Eytzinger) splitter tree
+     * without data-dependent branches, and the resulting buckets are sorted in
+     * parallel. Bucket contents are shown in the aux lane while they are filled.
+     */
+    public static void sampleSort(int[] array, List<Operation> ops, SortMetrics metrics, int threads) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        int n = a.length();
+        int[] bounds = sampleSortPartition(a, 0, n);
+
+        if (bounds != null) {
+            int workers = Math.max(1, Math.min(threads, n / PARALLEL_MIN_CHUNK));
+            java.util.concurrent.ExecutorService pool = workers > 1
+                    ? java.util.concurrent.Executors.newFixedThreadPool(workers)
+                    : null;
+            try {
+                runWorkers(pool, bounds.length - 1, array, ops, metrics,
+                        (b, t) -> sampleSortRec(t, bounds[b], bounds[b + 1]));
+            } finally {
+                if (pool != null) pool.shutdownNow();
+            }
+        }
+        for (int k = 0; k < n; k++) a.markFinal(k);
+    }
+
+    private static void sampleSortRec(TrackedArray a, int lo, int hi) {
+        int[] bounds = sampleSortPartition(a, lo, hi);
+        if (bounds == null) return;
+        for (int b = 0; b < bounds.length - 1; b++) {
+            sampleSortRec(a, bounds[b], bounds[b + 1]);
+        }
+    }
+
+    /**
+     * Splits [lo, hi) into buckets and returns their boundaries, or null when the
+     * range was finished directly (small range, or all splitters equal).
+     */
+    private static int[] sampleSortPartition(TrackedArray a, int lo, int hi) {
+        final int insertionLine = 2;
+        final int threeWayLine = 4;
+        final int copyBackLine = 11;
+        final int k = SAMPLE_SORT_BUCKETS;
+        int n = hi - lo;
+
+        if (n <= SAMPLE_SORT_BASE_CASE) {
+            insertionSortRange(a, lo, hi, insertionLine, insertionLine);
+            return null;
+        }
+
+        java.util.concurrent.ThreadLocalRandom rnd = java.util.concurrent.ThreadLocalRandom.current();
+        int[] sample = new int[k * SAMPLE_SORT_OVERSAMPLING];
+        for (int i = 0; i < sample.length; i++) sample[i] = a.get(lo + rnd.nextInt(n));
+        SortKernels.quickSort(sample, SortKernels.ACTIVE);
+        int[] splitters = new int[k - 1];
+        for (int i = 0; i < k - 1; i++) splitters[i] = sample[(i + 1) * SAMPLE_SORT_OVERSAMPLING - 1];
+
+        if (splitters[0] == splitters[k - 2]) {
+            // Every splitter is the same value: a three-way partition makes progress instead.
+            int pivot = splitters[0];
+            int lt = lo, i = lo, gt = hi - 1;
+            while (i <= gt) {
+                a.compareVisual(i, lt, threeWayLine);
+                a.metrics.comparisons++;
+                int value = a.get(i);
+                if (a.branch(value < pivot, threeWayLine)) {
+                    if (lt != i) a.swap(lt, i, threeWayLine);
+                    lt++;
+                    i++;
+                } else if (value > pivot) {
+                    a.swap(i, gt--, threeWayLine);
+                } else {
+                    i++;
+                }
+            }
+            sampleSortRec(a, lo, lt);
+            sampleSortRec(a, gt + 1, hi);
+            return null;
+        }
+
+        int[] tree = new int[k];
+        buildSplitterTree(tree, splitters, 1, 0, k - 1);
+        int levels = Integer.numberOfTrailingZeros(k);
+
+        int[] next = new int[k + 1];
+        for (int i = lo; i < hi; i++) {
+            next[classify(tree, levels, a.get(i), a.metrics) + 1]++;
+        }
+        for (int b = 0; b < k; b++) next[b + 1] += next[b];
+        int[] bounds = new int[k + 1];
+        for (int b = 0; b <= k; b++) bounds[b] = lo + next[b];
+
+        a.allocateAux(n);
+        int[] buffer = new int[n];
+        for (int i = lo; i < hi; i++) {
+            int value = a.get(i);
+            int pos = next[classify(tree, levels, value, a.metrics)]++;
+            buffer[pos] = value;
+            a.writeAux(pos, value);
+        }
+        for (int i = 0; i < n; i++) {
+            a.setVisual(lo + i, buffer[i], copyBackLine);
+        }
+        a.clearAux(n);
+        return bounds;
+    }
+
+    private static void buildSplitterTree(int[] tree, int[] splitters, int node, int lo, int hi) {
+        if (lo >= hi) return;
+        int mid = (lo + hi) >>> 1;
+        tree[node] = splitters[mid];
+        buildSplitterTree(tree, splitters, 2 * node, lo, mid);
+        buildSplitterTree(tree, splitters, 2 * node + 1, mid + 1, hi);
+    }
+
+    /** Returns the number of splitters strictly smaller than {@code value}. */
+    private static int classify(int[] tree, int levels, int value, SortMetrics metrics) {
+        int j = 1;
+        for (int level = 0; level < levels; level++) {
+            j = 2 * j + (value > tree[j] ? 1 : 0);
+        }
+        metrics.comparisons += levels;
+        return j - tree.length;
+    }
+
+    /**
+     * Bitonic sorting network in its all-ascending form: the first compare-exchange of
+     * every merge pairs each index with its mirror in the block, the rest pair i with
+     * i ^ j. Positions past the end behave as +infinity, so any N works without padding.
+     * Every stage is a set of disjoint compare-exchanges, run in parallel and recorded
+     * as one batch.
+     */
+    public static void bitonicSort(int[] array, List<Operation> ops, SortMetrics metrics) {
+        bitonicSort(array, ops, metrics, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static void bitonicSort(int[] array, List<Operation> ops, SortMetrics metrics, int threads) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        int n = a.length();
+        final int compareLine = 5;
+        final int swapLine = 6;
+
+        int workers = Math.max(1, Math.min(threads, n / PARALLEL_MIN_CHUNK));
+        int[] chunkStart = new int[workers + 1];
+        for (int w = 0; w <= workers; w++) chunkStart[w] = (int) ((long) n * w / workers);
+
+        java.util.concurrent.ExecutorService pool = workers > 1
+                ? java.util.concurrent.Executors.newFixedThreadPool(workers)
+                : null;
+        try {
+            for (int k = 2; k / 2 < n; k *= 2) {
+                for (int j = k / 2; j > 0; j /= 2) {
+                    final int mask = (j == k / 2) ? k - 1 : j;
+                    int marker = a.beginBatch();
+                    runWorkers(pool, workers, array, ops, metrics, (w, t) -> {
+                        for (int i = chunkStart[w]; i < chunkStart[w + 1]; i++) {
+                            int partner = i ^ mask;
+                            if (partner > i && partner < n && t.branch(t.getVisualCompare(i, partner, compareLine) > 0, compareLine)) {
+                                t.swap(i, partner, swapLine);
+                            }
+                        }
+                    });
+                    a.endBatch(marker);
+                }
+            }
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+        for (int k = 0; k < n; k++) a.markFinal(k);
+    }
+
+    private static final int BLOCK_MERGE_RUN = 16;
+
+    /**
+     * Stable bottom-up merge sort that keeps only a sqrt(N) buffer. Merges whose
+     * shorter side fits the buffer are done through it; larger ones are split by
+     * binary search, the middle is rotated in place, and both halves recurse.
+     */
+    public static void blockMergeSort(int[] array, List<Operation> ops, SortMetrics metrics) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        int n = a.length();
+        final int insertionLine = 1;
+
+        for (int lo = 0; lo < n; lo += BLOCK_MERGE_RUN) {
+            insertionSortRange(a, lo, Math.min(lo + BLOCK_MERGE_RUN, n), insertionLine, insertionLine);
+        }
+
+        int bufferLength = (int) Math.ceil(Math.sqrt(n));
+        a.allocateAux(bufferLength);
+        int[] buffer = new int[bufferLength];
+        for (int width = BLOCK_MERGE_RUN; width < n; width *= 2) {
+            for (int lo = 0; lo < n - width; lo += 2 * width) {
+                blockMerge(a, buffer, lo, lo + width, Math.min(lo + 2 * width, n));
+            }
+        }
+        a.clearAux(bufferLength);
+        for (int k = 0; k < n; k++) a.markFinal(k);
+    }
+
+    private static void blockMerge(TrackedArray a, int[] buffer, int lo, int mid, int hi) {
+        final int orderedLine = 6;
+        final int searchLine = 8;
+        final int rotateLine = 9;
+
+        if (lo >= mid || mid >= hi) return;
+        a.compareVisual(mid - 1, mid, orderedLine);
+        a.metrics.comparisons++;
+        if (a.branch(a.get(mid - 1) <= a.get(mid), orderedLine)) return;
+
+        int leftLength = mid - lo;
+        int rightLength = hi - mid;
+        if (Math.min(leftLength, rightLength) <= buffer.length) {
+            bufferedMerge(a, buffer, lo, mid, hi);
+            return;
+        }
+
+        int firstCut, secondCut;
+        if (leftLength > rightLength) {
+            firstCut = lo + leftLength / 2;
+            int key = a.get(firstCut);
+            int l = mid, r = hi; // lower bound of key in the right run
+            while (l < r) {
+                int m = (l + r) >>> 1;
+                a.compareVisual(m, firstCut, searchLine);
+                a.metrics.comparisons++;
+                if (a.branch(a.get(m) < key, searchLine)) l = m + 1; else r = m;
+            }
+            secondCut = l;
+        } else {
+            secondCut = mid + rightLength / 2;
+            int key = a.get(secondCut);
+            int l = lo, r = mid; // upper bound of key in the left run
+            while (l < r) {
+                int m = (l + r) >>> 1;
+                a.compareVisual(m, secondCut, searchLine);
+                a.metrics.comparisons++;
+                if (a.branch(a.get(m) <= key, searchLine)) l = m + 1; else r = m;
+            }
+            firstCut = l;
+        }
+
+        rotate(a, firstCut, mid, secondCut, rotateLine);
+        int newMid = firstCut + (secondCut - mid);
+        blockMerge(a, buffer, lo, firstCut, newMid);
+        blockMerge(a, buffer, newMid, secondCut, hi);
+    }
+
+    /** Merges through the buffer, copying out whichever run is shorter. */
+    private static void bufferedMerge(TrackedArray a, int[] buffer, int lo, int mid, int hi) {
+        final int compareLine = 7;
+        final int writeLine = 7;
+
+        if (mid - lo <= hi - mid) {
+            int length = mid - lo;
+            for (int k = 0; k < length; k++) {
+                buffer[k] = a.get(lo + k);
+                a.writeAux(k, buffer[k]);
+            }
+            int i = 0, j = mid, out = lo;
+            while (i < length && j < hi) {
+                a.compareVisual(j, out, compareLine);
+                a.metrics.comparisons++;
+                int right = a.get(j);
+                if (a.branch(right < buffer[i], compareLine)) {
+                    a.setVisual(out++, right, writeLine);
+                    j++;
+                } else {
+                    a.setVisual(out++, buffer[i++], writeLine);
+                }
+            }
+            while (i < length) a.setVisual(out++, buffer[i++], writeLine);
+        } else {
+            int length = hi - mid;
+            for (int k = 0; k < length; k++) {
+                buffer[k] = a.get(mid + k);
+                a.writeAux(k, buffer[k]);
+            }
+            int i = mid - 1, j = length - 1, out = hi - 1;
+            while (i >= lo && j >= 0) {
+                a.compareVisual(i, out, compareLine);
+                a.metrics.comparisons++;
+                int left = a.get(i);
+                if (a.branch(left > buffer[j], compareLine)) {
+                    a.setVisual(out--, left, writeLine);
+                    i--;
+                } else {
+                    a.setVisual(out--, buffer[j--], writeLine);
+                }
+            }
+            while (j >= 0) a.setVisual(out--, buffer[j--], writeLine);
+        }
+    }
+
+    /** Exchanges the blocks [lo, mid) and [mid, hi) with three reversals. */
+    private static void rotate(TrackedArray a, int lo, int mid, int hi, int codeLine) {
+        if (lo == mid || mid == hi) return;
+        reverse(a, lo, mid, codeLine);
+        reverse(a, mid, hi, codeLine);
+        reverse(a, lo, hi, codeLine);
+    }
+
+    private static void reverse(TrackedArray a, int lo, int hi, int codeLine) {
+        for (int i = lo, j = hi - 1; i < j; i++, j--) a.swap(i, j, codeLine);
+    }
+
+    /*
+     * Primitive overloads for widths the visualizer cannot display. They count reads
+     * and writes directly in the metrics instead of going through TrackedArray.
+     */
+
+    /** Signed 64-bit LSD radix sort, eight byte passes at most. */
+    public static void radixSort(long[] array, SortMetrics metrics) {
+        radixSortLongKeys(array, Long.MIN_VALUE, metrics);
+    }
+
+    /**
+     * Sorts doubles in {@link Double#compare} order: -0.0 before 0.0 and NaN last.
+     * NaNs are canonicalised to {@link Double#NaN} on the way through.
+     */
+    public static void radixSort(double[] array, SortMetrics metrics) {
+        int n = array.length;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            long bits = Double.doubleToLongBits(array[i]);
+            keys[i] = bits ^ ((bits >> 63) | Long.MIN_VALUE); // negatives flip entirely, positives flip the sign
+        }
+        metrics.arrayReads += n;
+        metrics.currentAuxSpace += n;
+        metrics.peakAuxSpace = Math.max(metrics.peakAuxSpace, metrics.currentAuxSpace);
+
+        radixSortLongKeys(keys, 0L, metrics);
+
+        for (int i = 0; i < n; i++) {
+            long key = keys[i];
+            array[i] = Double.longBitsToDouble(key < 0 ? key ^ Long.MIN_VALUE : ~key);
+        }
+        metrics.arrayWrites += n;
+        metrics.currentAuxSpace -= n;
+    }
+
+    /** Sorts keys as unsigned after XOR with {@code signFlip}. */
+    private static void radixSortLongKeys(long[] a, long signFlip, SortMetrics metrics) {
+        int n = a.length;
+        if (n == 0) return;
+
+        int[][] counts = new int[8][256];
+        for (long value : a) {
+            long key = value ^ signFlip;
+            for (int pass = 0; pass < 8; pass++) counts[pass][(int) (key >>> (pass * 8)) & 0xFF]++;
+        }
+        metrics.arrayReads += n;
+
+        metrics.currentAuxSpace += n;
+        metrics.peakAuxSpace = Math.max(metrics.peakAuxSpace, metrics.currentAuxSpace);
+        long[] buffer = new long[n];
+        for (int pass = 0; pass < 8; pass++) {
+            int shift = pass * 8;
+            int[] count = counts[pass];
+            if (count[(int) ((a[0] ^ signFlip) >>> shift) & 0xFF] == n) continue;
+
+            int sum = 0;
+            for (int b = 0; b < 256; b++) {
+                int c = count[b];
+                count[b] = sum;
+                sum += c;
+            }
+            for (long value : a) {
+                buffer[count[(int) ((value ^ signFlip) >>> shift) & 0xFF]++] = value;
+            }
+            System.arraycopy(buffer, 0, a, 0, n);
+            metrics.arrayReads += 2L * n;
+            metrics.arrayWrites += 2L * n;
+        }
+        metrics.currentAuxSpace -= n;
+    }
+
+    /** Sorts {@code keys} and applies the same stable permutation to {@code values}. */
+    public static void radixSort(int[] keys, int[] values, SortMetrics metrics) {
+        int n = keys.length;
+        if (values.length != n) {
+            throw new IllegalArgumentException("Keys and values must have the same length.");
+        }
+        if (n == 0) return;
+
+        int[][] counts = new int[4][256];
+        for (int value : keys) {
+            int key = value ^ Integer.MIN_VALUE;
+            counts[0][key & 0xFF]++;
+            counts[1][(key >>> 8) & 0xFF]++;
+            counts[2][(key >>> 16) & 0xFF]++;
+            counts[3][key >>> 24]++;
+        }
+        metrics.arrayReads += n;
+
+        metrics.currentAuxSpace += 2L * n;
+        metrics.peakAuxSpace = Math.max(metrics.peakAuxSpace, metrics.currentAuxSpace);
+        int[] keyBuffer = new int[n];
+        int[] valueBuffer = new int[n];
+        for (int pass = 0; pass < 4; pass++) {
+            int shift = pass * 8;
+            int[] count = counts[pass];
+            if (count[flagDigit(keys[0], shift)] == n) continue;
+
+            int sum = 0;
+            for (int b = 0; b < 256; b++) {
+                int c = count[b];
+                count[b] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int pos = count[flagDigit(keys[i], shift)]++;
+                keyBuffer[pos] = keys[i];
+                valueBuffer[pos] = values[i];
+            }
+            System.arraycopy(keyBuffer, 0, keys, 0, n);
+            System.arraycopy(valueBuffer, 0, values, 0, n);
+            metrics.arrayReads += 4L * n;
+            metrics.arrayWrites += 4L * n;
+        }
+        metrics.currentAuxSpace -= 2L * n;
+    }
+
+    /**
+     * Cycle sort: every element is written straight to its final position, so the
+     * number of array writes equals the number of misplaced elements.
+     */
+    public static void cycleSort(int[] array, List<Operation> ops, SortMetrics metrics) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        int n = a.length();
+        final int countLine = 5;
+        final int skipLine = 7;
+        final int writeLine = 8;
+
+        for (int cycleStart = 0; cycleStart < n - 1; cycleStart++) {
+            int item = a.get(cycleStart);
+            int pos = cycleStart;
+            for (int i = cycleStart + 1; i < n; i++) {
+                a.compareVisual(i, cycleStart, countLine);
+                a.metrics.comparisons++;
+                if (a.branch(a.get(i) < item, countLine)) pos++;
+            }
+            if (pos == cycleStart) {
+                a.markFinal(cycleStart);
+                continue;
+            }
+
+            while (pos != cycleStart) {
+                while (true) {
+                    a.compareVisual(pos, cycleStart, skipLine);
+                    a.metrics.comparisons++;
+                    if (a.branch(item != a.get(pos), skipLine)) break;
+                    pos++;
+                }
+                int displaced = a.get(pos);
+                a.setVisual(pos, item, writeLine);
+                item = displaced;
+
+                pos = cycleStart;
+                for (int i = cycleStart + 1; i < n; i++) {
+                    a.compareVisual(i, cycleStart, countLine);
+                    a.metrics.comparisons++;
+                    if (a.branch(a.get(i) < item, countLine)) pos++;
+                }
+            }
+            a.setVisual(cycleStart, item, writeLine);
+            a.markFinal(cycleStart);
+        }
+        if (n > 0) a.markFinal(n - 1);
+    }
+
+    /**
+     * Selection sort that only reads while selecting: each slot's source index is
+     * chosen first (preferring an element already in place on ties) and the resulting
+     * permutation is applied by following its cycles, one write per misplaced element.
+     */
+    public static void writeMinimalSelectionSort(int[] array, List<Operation> ops, SortMetrics metrics) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        int n = a.length();
+        final int compareLine = 5;
+        final int writeLine = 12;
+
+        a.allocateAux(n);
+        int[] source = new int[n];
+        boolean[] taken = new boolean[n];
+        for (int pos = 0; pos < n; pos++) {
+            int minIdx = taken[pos] ? -1 : pos;
+            for (int j = 0; j < n; j++) {
+                if (taken[j] || j == minIdx) continue;
+                if (minIdx < 0) {
+                    minIdx = j;
+                    continue;
+                }
+                if (a.branch(a.getVisualCompare(j, minIdx, compareLine) < 0, compareLine)) minIdx = j;
+            }
+            taken[minIdx] = true;
+            source[pos] = minIdx;
+            a.showAux(pos, a.get(minIdx));
+        }
+
+        for (int start = 0; start < n; start++) {
+            if (source[start] == start) continue;
+            int held = a.get(start);
+            int j = start;
+            while (source[j] != start) {
+                int next = source[j];
+                a.setVisual(j, a.get(next), writeLine);
+                source[j] = j;
+                j = next;
+            }
+            a.setVisual(j, held, writeLine);
+            source[j] = j;
+        }
+        a.clearAux(n);
+        for (int k = 0; k < n; k++) a.markFinal(k);
+    }
+
+    /**
+     * Introselect: rearranges the array so index {@code k} holds the k-th smallest
+     * value (0-based) with no larger value before it and no smaller value after it.
+     * Median-of-three quickselect falls back to a heap sort of the remaining range
+     * once the partition depth exceeds 2 log2 N. Returns the selected value.
+     */
+    public static int quickSelect(int[] array, int k, List<Operation> ops, SortMetrics metrics) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        int n = a.length();
+        if (k < 0 || k >= n) {
+            throw new IllegalArgumentException("k must be in [0, " + n + "), got " + k);
+        }
+        int low = 0, high = n - 1;
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(n));
+        while (low < high) {
+            if (depthLimit-- == 0) {
+                heapSortRange(a, low, high + 1);
+                break;
+            }
+            int mid = (low + high) >>> 1;
+            medianOfThreeToHigh(a, low, mid, high);
+            int p = partition(a, low, high);
+            if (p == k) break;
+            if (k < p) high = p - 1; else low = p + 1;
+        }
+        a.markFinal(k);
+        return a.get(k);
+    }
+
+    /**
+     * Leaves the k smallest values sorted in {@code array[0, k)}, using a max-heap of
+     * size k over the prefix: O(N log k + k log k) and no auxiliary array.
+     */
+    public static void topK(int[] array, int k, List<Operation> ops, SortMetrics metrics) {
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        int n = a.length();
+        k = Math.max(0, Math.min(k, n));
+        final int replaceLine = 3;
+        if (k == 0) return;
+
+        for (int i = k / 2 - 1; i >= 0; i--) siftDownRange(a, 0, k, i);
+        for (int i = k; i < n; i++) {
+            a.compareVisual(i, 0, replaceLine);
+            a.metrics.comparisons++;
+            if (a.branch(a.get(i) < a.get(0), replaceLine)) {
+                a.swap(0, i, replaceLine);
+                siftDownRange(a, 0, k, 0);
+            }
+        }
+        for (int end = k - 1; end > 0; end--) {
+            a.swap(0, end, replaceLine);
+            siftDownRange(a, 0, end, 0);
+        }
+        for (int i = 0; i < k; i++) a.markFinal(i);
+    }
+
+    /** Sorts only {@code array[0, k)}: introselect the boundary, then heap sort the prefix. */
+    public static void partialSort(int[] array, int k, List<Operation> ops, SortMetrics metrics) {
+        int n = array.length;
+        k = Math.max(0, Math.min(k, n));
+        if (k == 0) return;
+        if (k < n) quickSelect(array, k - 1, ops, metrics);
+        TrackedArray a = new TrackedArray(array, ops, metrics);
+        heapSortRange(a, 0, k);
+        for (int i = 0; i < k; i++) a.markFinal(i);
+    }
+
+    private static void medianOfThreeToHigh(TrackedArray a, int low, int mid, int high) {
+        final int pivotLine = 8;
+        if (a.branch(a.getVisualCompare(mid, low, pivotLine) < 0, pivotLine)) a.swap(mid, low, pivotLine);
+        if (a.branch(a.getVisualCompare(high, low, pivotLine) < 0, pivotLine)) a.swap(high, low, pivotLine);
+        if (a.branch(a.getVisualCompare(mid, high, pivotLine) < 0, pivotLine)) a.swap(mid, high, pivotLine);
+    }
+
+    private static void heapSortRange(TrackedArray a, int lo, int hi) {
+        final int swapLine = 5;
+        int size = hi - lo;
+        for (int i = size / 2 - 1; i >= 0; i--) siftDownRange(a, lo, size, i);
+        for (int end = size - 1; end > 0; end--) {
+            a.swap(lo, lo + end, swapLine);
+            siftDownRange(a, lo, end, 0);
+        }
+    }
+
+    /** Max-heap sift-down for a heap stored in {@code a[lo, lo + size)}. */
+    private static void siftDownRange(TrackedArray a, int lo, int size, int i) {
+        final int compareLine = 8;
+        final int swapLine = 11;
+        while (true) {
+            int largest = i;
+            int l = 2 * i + 1;
+            int r = l + 1;
+            if (l < size && a.branch(a.getVisualCompare(lo + l, lo + largest, compareLine) > 0, compareLine)) largest = l;
+            if (r < size && a.branch(a.getVisualCompare(lo + r, lo + largest, compareLine) > 0, compareLine)) largest = r;
+            if (largest == i) return;
+            a.swap(lo + i, lo + largest, swapLine);
+            i = largest;
+        }
+    }
+
+    private static final int OBJECT_MERGE_RUN = 16;
+
+    /** Stable merge sort of object references; every comparator call is counted. */
+    public static <T> void sort(T[] array, Comparator<? super T> comparator, SortMetrics metrics) {
+        int n = array.length;
+        metrics.currentAuxSpace += n;
+        metrics.peakAuxSpace = Math.max(metrics.peakAuxSpace, metrics.currentAuxSpace);
+        T[] buffer = array.clone();
+        objectMergeSortRec(buffer, array, 0, n, comparator, metrics);
+        metrics.currentAuxSpace -= n;
+    }
+
+    /** Sorts {@code dst[lo, hi)} using {@code src} as scratch; both start with the same contents. */
+    private static <T> void objectMergeSortRec(T[] src, T[] dst, int lo, int hi, Comparator<? super T> comparator, SortMetrics metrics) {
+        if (hi - lo <= OBJECT_MERGE_RUN) {
+            for (int i = lo + 1; i < hi; i++) {
+                T key = dst[i];
+                int j = i - 1;
+                while (j >= lo) {
+                    metrics.comparisons++;
+                    if (comparator.compare(dst[j], key) <= 0) break;
+                    dst[j + 1] = dst[j];
+                    metrics.arrayWrites++;
+                    j--;
+                }
+                dst[j + 1] = key;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        objectMergeSortRec(dst, src, lo, mid, comparator, metrics);
+        objectMergeSortRec(dst, src, mid, hi, comparator, metrics);
+
+        metrics.comparisons++;
+        if (comparator.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, lo, dst, lo, hi - lo);
+            metrics.arrayWrites += hi - lo;
+            return;
+        }
+        for (int i = lo, p = lo, q = mid; i < hi; i++) {
+            if (q >= hi || p < mid && compareCounted(src[p], src[q], comparator, metrics) <= 0) {
+                dst[i] = src[p++];
+            } else {
+                dst[i] = src[q++];
+            }
+        }
+        metrics.arrayReads += hi - lo;
+        metrics.arrayWrites += hi - lo;
+    }
+
+    private static <T> int compareCounted(T a, T b, Comparator<? super T> comparator, SortMetrics metrics) {
+        metrics.comparisons++;
+        return comparator.compare(a, b);
+    }
+
+    /**
+     * Extracts each element's int key once, packs it with the element's index into a
+     * long (key in the high half, so ties keep their original order), radix sorts
+     * the packed array and then permutes the references in a single pass.
+     */
+    public static <T> void sortByKey(T[] array, java.util.function.ToIntFunction<? super T> key, SortMetrics metrics) {
+        int n = array.length;
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            packed[i] = ((long) key.applyAsInt(array[i]) << 32) | i;
+        }
+        metrics.arrayReads += n;
+        metrics.currentAuxSpace += 2L * n;
+        metrics.peakAuxSpace = Math.max(metrics.peakAuxSpace, metrics.currentAuxSpace);
+
+        radixSort(packed, metrics);
+
+        T[] original = array.clone();
+        for (int i = 0; i < n; i++) {
+            array[i] = original[(int) packed[i]];
+        }
+        metrics.arrayWrites += n;
+        metrics.currentAuxSpace -= 2L * n;
+    }
+
+    @FunctionalInterface
+    private interface WorkerTask {
+        void run(int worker, TrackedArray a);
+    }
+
+    /**
+     * Runs one task per worker and waits for all of them. Each worker records into its
+     * own metrics and operation list, which are folded back in worker order so traces
+     * stay deterministic. Without a pool the workers simply run one after another.
+     */
+    private static void runWorkers(java.util.concurrent.ExecutorService pool, int workers, int[] array,
+            List<Operation> ops, SortMetrics metrics, WorkerTask task) {
+        if (pool == null) {
+            TrackedArray shared = new TrackedArray(array, ops, metrics);
+            for (int w = 0; w < workers; w++) task.run(w, shared);
+            return;
+        }
+
+        SortMetrics[] workerMetrics = new SortMetrics[workers];
+        List<List<Operation>> workerOps = new ArrayList<>();
+        List<java.util.concurrent.Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            final int worker = w;
+            workerMetrics[w] = metrics.forWorker();
+            List<Operation> localOps = ops == null ? null : new ArrayList<>();
+            workerOps.add(localOps);
+            TrackedArray local = new TrackedArray(array, localOps, workerMetrics[w]);
+            futures.add(pool.submit(() -> task.run(worker, local)));
+        }
+
+        try {
+            for (java.util.concurrent.Future<?> f : futures) f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Sorting worker interrupted", ex);
+        } catch (java.util.concurrent.ExecutionException ex) {
+            throw new IllegalStateException("Sorting worker failed: " + ex.getCause(), ex.getCause());
+        }
+
+        for (int w = 0; w < workers; w++) {
+            metrics.merge(workerMetrics[w]);
+            if (ops != null) ops.addAll(workerOps.get(w));
+        }
+    }
+}
+
+
+
+
+/*
+ * ---------------------------- Raw kernels (no operation recording)
+ * ----------------------------
+ * Hot inner loops of the raw sorts behind one interface. SortKernels.ACTIVE is chosen
+ * once at startup: the Vector API kernel from VectorSortKernel.java when it was compiled
+ * (JDK 16+) and the JVM runs with --add-modules jdk.incubator.vector, otherwise the
+ * scalar kernel below. This file never links against jdk.incubator.vector, so it still
+ * builds with a plain Java 8 javac.
+ */
+interface SortKernel {
+    String name();
+
+    /** Moves the values below {@code pivot} to the front of [lo, hi); returns the first index holding a value >= pivot. */
+    int partition(int[] a, int lo, int hi, int pivot);
+
+    /** Adds the radix digit at {@code shift} (sign bit flipped) of every value in [lo, hi) to the 256 {@code count} buckets. */
+    void histogram(int[] a, int lo, int hi, int shift, int[] count);
+
+    /** Sorts every block of 8 in [lo, hi), counted from {@code lo}; the last block may be shorter. */
+    void sortBlocks(int[] a, int lo, int hi);
+}
+
+class SortKernels {
+    static final String VECTOR_KERNEL_CLASS = "VectorSortKernel";
+
+    // Batcher odd-even merge network for 8 inputs (19 compare-exchanges).
+    static final int[] NETWORK_8 = {
+            0, 1, 2, 3, 4, 5, 6, 7,
+            0, 2, 1, 3, 4, 6, 5, 7,
+            1, 2, 5, 6,
+            0, 4, 1, 5, 2, 6, 3, 7,
+            2, 4, 3, 5,
+            1, 2, 3, 4, 5, 6
+    };
+
+    static final SortKernel SCALAR = new ScalarKernel();
+    /** The Vector API kernel, or null when it cannot be loaded; {@link #VECTOR_STATUS} says why. */
+    static final SortKernel VECTOR;
+    static final String VECTOR_STATUS;
+
+    static {
+        SortKernel vector = null;
+        String status;
+        try {
+            vector = (SortKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+            status = "Vector API kernel in use (" + vector.name() + ")";
+        } catch (ClassNotFoundException ex) {
+            status = "Vector API kernel not compiled (VectorSortKernel.java needs JDK 16+)";
+        } catch (LinkageError ex) {
+            status = "Vector API not loaded (run with --add-modules jdk.incubator.vector)";
+        } catch (java.lang.reflect.InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            status = cause instanceof LinkageError
+                    ? "Vector API not loaded (run with --add-modules jdk.incubator.vector)"
+                    : "Vector API kernel disabled: " + cause.getMessage();
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            status = "Vector API kernel disabled: " + ex;
+        }
+        VECTOR = vector;
+        VECTOR_STATUS = status;
+    }
+
+    static final SortKernel ACTIVE = VECTOR != null ? VECTOR : SCALAR;
+
+    private static final int QUICKSORT_LEAF = 16;
+
+    /**
+     * Raw quicksort built on {@code kernel}: each level partitions twice (below the pivot,
+     * then equal to it) so duplicates cost nothing, ranges of 16 or fewer are left for the
+     * end, and the nearly sorted result is finished by block-sorting and one insertion pass.
+     */
+    static void quickSort(int[] a, SortKernel kernel) {
+        if (a.length < 2) return;
+        quickSortRange(a, 0, a.length, kernel, 2 * (32 - Integer.numberOfLeadingZeros(a.length)));
+        kernel.sortBlocks(a, 0, a.length);
+        insertionSort(a, 0, a.length);
+    }
+
+    private static void quickSortRange(int[] a, int lo, int hi, SortKernel kernel, int depth) {
+        while (hi - lo > QUICKSORT_LEAF) {
+            if (depth-- == 0) {
+                Arrays.sort(a, lo, hi);
+                return;
+            }
+            int pivot = medianOfThree(a[lo], a[(lo + hi) >>> 1], a[hi - 1]);
+            int lt = kernel.partition(a, lo, hi, pivot);
+            int gt = pivot == Integer.MAX_VALUE ? hi : kernel.partition(a, lt, hi, pivot + 1);
+            // [lt, gt) holds the pivot value, so it is never empty; loop on the larger side.
+            if (lt - lo < hi - gt) {
+                quickSortRange(a, lo, lt, kernel, depth);
+                lo = gt;
+            } else {
+                quickSortRange(a, gt, hi, kernel, depth);
+                hi = lt;
+            }
+        }
+    }
+
+    private static int medianOfThree(int x, int y, int z) {
+        return Math.max(Math.min(x, y), Math.min(Math.max(x, y), z));
+    }
+
+    static void insertionSort(int[] a, int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            int key = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > key) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = key;
+        }
+    }
+
+    /** Plain Java kernels: the fallback on every JVM, written in shapes the JIT keeps free of mispredictions. */
+    private static final class ScalarKernel implements SortKernel {
+        @Override
+        public String name() {
+            return "scalar";
+        }
+
+        /** Swaps unconditionally and advances the write index by the comparison flag. */
+        @Override
+        public int partition(int[] a, int lo, int hi, int pivot) {
+            int i = lo;
+            for (int j = lo; j < hi; j++) {
+                int value = a[j];
+                a[j] = a[i];
+                a[i] = value;
+                i += value < pivot ? 1 : 0;
+            }
+            return i;
+        }
+
+        /**
+         * Four interleaved count tables so consecutive equal digits do not serialise on the
+         * same counter, then a final reduction into {@code count}.
+         */
+        @Override
+        public void histogram(int[] a, int lo, int hi, int shift, int[] count) {
+            int[] c0 = new int[256], c1 = new int[256], c2 = new int[256], c3 = new int[256];
+            int i = lo;
+            for (; i + 3 < hi; i += 4) {
+                c0[((a[i] ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++;
+                c1[((a[i + 1] ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++;
+                c2[((a[i + 2] ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++;
+                c3[((a[i + 3] ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++;
+            }
+            for (; i < hi; i++) c0[((a[i] ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++;
+            for (int b = 0; b < 256; b++) count[b] += c0[b] + c1[b] + c2[b] + c3[b];
+        }
+
+        /** Full blocks go through the min/max network; a short last block is insertion sorted. */
+        @Override
+        public void sortBlocks(int[] a, int lo, int hi) {
+            int o = lo;
+            for (; o + 8 <= hi; o += 8) {
+                for (int c = 0; c < NETWORK_8.length; c += 2) {
+                    int p = o + NETWORK_8[c];
+                    int q = o + NETWORK_8[c + 1];
+                    int x = a[p];
+                    int y = a[q];
+                    a[p] = Math.min(x, y);
+                    a[q] = Math.max(x, y);
+                }
+            }
+            insertionSort(a, o, hi);
+        }
+    }
+}
+
+/*
+ * ---------------------------- External merge sort
+ * ----------------------------
+ * Sorts files of big-endian 32-bit ints that do not fit in the heap: fixed-size
+ * runs are sorted in memory and spilled to temp files, then merged k ways at a
+ * time through buffered channels until one run remains. A run needs its int[] plus
+ * the radix sort's equally sized scratch array; all file I/O goes through small
+ * fixed buffers, so heap use is about 8 bytes per run element plus one buffer per
+ * merged run.
+ */
+class ExternalSorter {
+    static final int DEFAULT_FAN_IN = 64;
+    static final int DEFAULT_BUFFER_BYTES = 1 << 16;
+    /** The run array and the radix sort's scratch array, per element. */
+    static final int RUN_BYTES_PER_ELEMENT = 2 * Integer.BYTES;
+
+    private final int runElements;
+    private final int fanIn;
+    private final int bufferBytes;
+
+    static final class Report {
+        long elements;
+        long bytesRead;
+        long bytesWritten;
+        int runs;
+        int mergePasses;
+        long timeNanos;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "Sorted %d ints in %.3f ms: %d runs, %d merge passes, %.1f MB read, %.1f MB written",
+                    elements, timeNanos / 1_000_000.0, runs, mergePasses,
+                    bytesRead / 1_048_576.0, bytesWritten / 1_048_576.0);
+        }
+    }
+
+    ExternalSorter(int runElements, int fanIn, int bufferBytes) {
+        if (runElements < 1 || fanIn < 2 || bufferBytes < Integer.BYTES) {
+            throw new IllegalArgumentException("Run size, fan-in and buffer size are too small.");
+        }
+        this.runElements = runElements;
+        this.fanIn = fanIn;
+        this.bufferBytes = bufferBytes & ~(Integer.BYTES - 1);
+    }
+
+    /** Sizes runs so that a run and its sort scratch together take at most {@code runBytes}. */
+    static ExternalSorter forRunBytes(long runBytes, int fanIn, int bufferBytes) {
+        if (runBytes < RUN_BYTES_PER_ELEMENT || runBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Run size must be between " + RUN_BYTES_PER_ELEMENT
+                    + " bytes and " + (Integer.MAX_VALUE >> 20) + " MB, got " + runBytes + " bytes.");
+        }
+        return new ExternalSorter((int) (runBytes / RUN_BYTES_PER_ELEMENT), fanIn, bufferBytes);
+    }
+
+    /** A third of the maximum heap, capped at the largest run size {@link #forRunBytes} accepts. */
+    static long defaultRunBytes() {
+        return Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 3);
+    }
+
+    public Report sort(Path input, Path output) throws IOException {
+        long startNanos = System.nanoTime();
+        Report report = new Report();
+        if (Files.size(input) % Integer.BYTES != 0) {
+            throw new IOException(input + " does not hold a whole number of 32-bit ints.");
+        }
+
+        Path tempDir = Files.createTempDirectory("external-sort");
+        List<Path> runs = new ArrayList<>();
+        try {
+            createRuns(input, tempDir, runs, report);
+            report.runs = runs.size();
+
+            while (runs.size() > fanIn) {
+                List<Path> merged = new ArrayList<>();
+                for (int from = 0; from < runs.size(); from += fanIn) {
+                    List<Path> group = runs.subList(from, Math.min(from + fanIn, runs.size()));
+                    Path target = Files.createTempFile(tempDir, "merge", ".bin");
+                    mergeRuns(group, target, report);
+                    merged.add(target);
+                }
+                runs = merged;
+                report.mergePasses++;
+            }
+            mergeRuns(runs, output, report);
+            if (runs.size() > 1) report.mergePasses++;
+        } finally {
+            try (java.util.stream.Stream<Path> leftovers = Files.list(tempDir)) {
+                for (Path p : (Iterable<Path>) leftovers::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(tempDir);
+        }
+        report.timeNanos = System.nanoTime() - startNanos;
+        return report;
+    }
+
+    private void createRuns(Path input, Path tempDir, List<Path> runs, Report report) throws IOException {
+        ByteBuffer inBuffer = ByteBuffer.allocateDirect(bufferBytes);
+        ByteBuffer outBuffer = ByteBuffer.allocateDirect(bufferBytes);
+        inBuffer.flip();
+        long remaining = Files.size(input) / Integer.BYTES;
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            while (remaining > 0) {
+                // The last run is sized to what is left, so no trimmed copy is ever made.
+                int[] run = new int[(int) Math.min(runElements, remaining)];
+                readInts(in, inBuffer, run);
+                remaining -= run.length;
+                report.bytesRead += run.length * (long) Integer.BYTES;
+                report.elements += run.length;
+
+                SortingAlgorithms.parallelRadixSort(run, null, new SortMetrics());
+
+                Path runFile = Files.createTempFile(tempDir, "run", ".bin");
+                try (FileChannel out = FileChannel.open(runFile, StandardOpenOption.WRITE)) {
+                    report.bytesWritten += writeInts(out, outBuffer, run);
+                }
+                runs.add(runFile);
+            }
+        }
+    }
+
+    /** Fills {@code target} from the channel, refilling the buffer as it drains; leftover bytes stay buffered. */
+    private static void readInts(FileChannel in, ByteBuffer buffer, int[] target) throws IOException {
+        int filled = 0;
+        while (filled < target.length) {
+            if (buffer.remaining() < Integer.BYTES) {
+                buffer.compact();
+                int read = in.read(buffer);
+                buffer.flip();
+                if (read < 0) throw new IOException("Input ended before the expected " + target.length + " ints.");
+                continue;
+            }
+            int take = Math.min(buffer.remaining() / Integer.BYTES, target.length - filled);
+            buffer.asIntBuffer().get(target, filled, take);
+            buffer.position(buffer.position() + take * Integer.BYTES);
+            filled += take;
+        }
+    }
+
+    private static long writeInts(FileChannel out, ByteBuffer buffer, int[] values) throws IOException {
+        long written = 0;
+        buffer.clear();
+        for (int from = 0; from < values.length; ) {
+            int take = Math.min(buffer.remaining() / Integer.BYTES, values.length - from);
+            buffer.asIntBuffer().put(values, from, take);
+            buffer.position(buffer.position() + take * Integer.BYTES);
+            from += take;
+            written += flush(buffer, out);
+        }
+        return written;
+    }
+
+    /** K-way merge with a binary min-heap of run indices keyed by each run's current head. */
+    private void mergeRuns(List<Path> runs, Path target, Report report) throws IOException {
+        int k = runs.size();
+        RunReader[] readers = new RunReader[k];
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int[] heap = new int[k];
+            int[] heads = new int[k];
+            int heapSize = 0;
+            for (int r = 0; r < k; r++) {
+                readers[r] = new RunReader(runs.get(r), bufferBytes);
+                if (readers[r].hasNext()) {
+                    heads[r] = readers[r].next();
+                    heap[heapSize++] = r;
+                }
+            }
+            for (int i = heapSize / 2 - 1; i >= 0; i--) siftDown(heap, heads, heapSize, i);
+
+            ByteBuffer outBuffer = ByteBuffer.allocateDirect(bufferBytes);
+            while (heapSize > 0) {
+                int r = heap[0];
+                if (!outBuffer.hasRemaining()) report.bytesWritten += flush(outBuffer, out);
+                outBuffer.putInt(heads[r]);
+                if (readers[r].hasNext()) {
+                    heads[r] = readers[r].next();
+                } else {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(heap, heads, heapSize, 0);
+            }
+            report.bytesWritten += flush(outBuffer, out);
+        } finally {
+            for (RunReader reader : readers) {
+                if (reader != null) {
+                    report.bytesRead += reader.bytesRead;
+                    reader.close();
+                }
+            }
+            for (Path run : runs) Files.deleteIfExists(run);
+        }
+    }
+
+    private static void siftDown(int[] heap, int[] heads, int size, int i) {
+        while (true) {
+            int smallest = i;
+            int l = 2 * i + 1;
+            int r = l + 1;
+            if (l < size && heads[heap[l]] < heads[heap[smallest]]) smallest = l;
+            if (r < size && heads[heap[r]] < heads[heap[smallest]]) smallest = r;
+            if (smallest == i) return;
+            int tmp = heap[i];
+            heap[i] = heap[smallest];
+            heap[smallest] = tmp;
+            i = smallest;
+        }
+    }
+
+    private static long flush(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        long written = buffer.remaining();
+        while (buffer.hasRemaining()) out.write(buffer);
+        buffer.clear();
+        return written;
+    }
+
+    private static final class RunReader implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        long bytesRead;
+
+        RunReader(Path run, int bufferBytes) throws IOException {
+            channel = FileChannel.open(run, StandardOpenOption.READ);
+            buffer = ByteBuffer.allocateDirect(bufferBytes);
+            buffer.flip();
+        }
+
+        boolean hasNext() throws IOException {
+            if (buffer.hasRemaining()) return true;
+            buffer.clear();
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // fill the buffer or stop at end of run
+            }
+            buffer.flip();
+            bytesRead += buffer.remaining();
+            return buffer.hasRemaining();
+        }
+
+        int next() {
+            return buffer.getInt();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
+
+/**
+ * Keeps a stream of values sorted as they arrive. New values go into a small insertion
+ * buffer; a full buffer becomes a sorted run that is merged up a binary counter of runs
+ * (level i holds a run of buffer << i), so each insert costs amortised O(log N).
+ */
+class OnlineSorter {
+    static final int DEFAULT_BUFFER = 64;
+    private static final long POLL_MILLIS = 100;
+
+    private final int[] buffer;
+    private int buffered;
+    private final List<int[]> levels = new ArrayList<>();
+    private final Report report = new Report();
+
+    static final class Report {
+        private static final int SUB_BUCKETS = 8;
+
+        long elements;
+        long merges;
+        long mergedElements;
+        long insertNanos;
+        long maxInsertNanos;
+        private final long[] latencyHistogram = new long[64 * SUB_BUCKETS];
+
+        void record(long nanos) {
+            elements++;
+            insertNanos += nanos;
+            if (nanos > maxInsertNanos) maxInsertNanos = nanos;
+            latencyHistogram[bucket(Math.max(0, nanos))]++;
+        }
+
+        /** Lower bound of the bucket holding the given percentile, within 1/8 of the true value. */
+        long percentileNanos(double percentile) {
+            long target = (long) Math.ceil(elements * percentile / 100.0);
+            long seen = 0;
+            for (int b = 0; b < latencyHistogram.length; b++) {
+                seen += latencyHistogram[b];
+                if (seen >= target && latencyHistogram[b] > 0) return bucketFloor(b);
+            }
+            return maxInsertNanos;
+        }
+
+        double insertsPerSecond() {
+            return elements / (Math.max(1, insertNanos) / 1e9);
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) return (int) nanos;
+            int high = 63 - Long.numberOfLeadingZeros(nanos);
+            return (high - 2) * SUB_BUCKETS + (int) ((nanos >>> (high - 3)) & (SUB_BUCKETS - 1));
+        }
+
+        private static long bucketFloor(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int high = bucket / SUB_BUCKETS + 2;
+            return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (high - 3);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "Inserted %d ints online: %.2f M inserts/s, latency p50 %d ns, p99 %d ns, max %.1f us, %d merges moving %d elements",
+                    elements, insertsPerSecond() / 1e6, percentileNanos(50), percentileNanos(99),
+                    maxInsertNanos / 1000.0, merges, mergedElements);
+        }
+    }
+
+    OnlineSorter(int bufferCapacity) {
+        if (bufferCapacity < 1) throw new IllegalArgumentException("Buffer capacity must be positive.");
+        buffer = new int[bufferCapacity];
+    }
+
+    public void insert(int value) {
+        long startNanos = System.nanoTime();
+        int lo = 0;
+        int hi = buffered;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (buffer[mid] <= value) lo = mid + 1;
+            else hi = mid;
+        }
+        System.arraycopy(buffer, lo, buffer, lo + 1, buffered - lo);
+        buffer[lo] = value;
+        if (++buffered == buffer.length) flushBuffer();
+        report.record(System.nanoTime() - startNanos);
+    }
+
+    public void insertAll(int[] values) {
+        for (int value : values) insert(value);
+    }
+
+    /**
+     * Inserts whitespace-separated integers from {@code in}. With {@code idleMillis < 0} reading
+     * stops at end of input; otherwise end of input is polled (like {@code tail -f}) until no new
+     * data has arrived for {@code idleMillis}. A token cut off at end of input waits for its rest.
+     */
+    public void insertAll(java.io.Reader in, long idleMillis) throws IOException {
+        char[] chars = new char[8192];
+        long value = 0;
+        boolean negative = false;
+        boolean inToken = false;
+        long idleSince = System.currentTimeMillis();
+        while (true) {
+            int read = in.read(chars);
+            if (read < 0) {
+                if (idleMillis < 0 || System.currentTimeMillis() - idleSince >= idleMillis) break;
+                try {
+                    Thread.sleep(POLL_MILLIS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                continue;
+            }
+            idleSince = System.currentTimeMillis();
+            for (int i = 0; i < read; i++) {
+                char c = chars[i];
+                if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    if (value > Integer.MAX_VALUE + 1L) throw new NumberFormatException("Value out of int range");
+                    inToken = true;
+                } else if (c == '-' && !inToken && !negative) {
+                    negative = true;
+                } else if (Character.isWhitespace(c) || c == ',') {
+                    if (inToken) insert(toInt(value, negative));
+                    else if (negative) throw new NumberFormatException("Dangling '-'");
+                    value = 0;
+                    negative = false;
+                    inToken = false;
+                } else {
+                    throw new NumberFormatException("Unexpected character '" + c + "' in input");
+                }
+            }
+        }
+        if (inToken) insert(toInt(value, negative));
+    }
+
+    private static int toInt(long magnitude, boolean negative) {
+        long value = negative ? -magnitude : magnitude;
+        if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) throw new NumberFormatException("Value out of int range: " + value);
+        return (int) value;
+    }
+
+    public long size() {
+        return report.elements;
+    }
+
+    /** Number of sorted runs currently held, counting a non-empty insertion buffer. */
+    public int runCount() {
+        int runs = buffered > 0 ? 1 : 0;
+        for (int[] run : levels) {
+            if (run != null) runs++;
+        }
+        return runs;
+    }
+
+    public Report getReport() {
+        return report;
+    }
+
+    /** Merges every run and the buffer into one sorted array without changing the sorter's state. */
+    public int[] toSortedArray() {
+        int[] result = Arrays.copyOf(buffer, buffered);
+        for (int[] run : levels) {
+            if (run != null) result = merge(run, result);
+        }
+        return result;
+    }
+
+    private void flushBuffer() {
+        int[] run = buffer.clone();
+        buffered = 0;
+        for (int level = 0; ; level++) {
+            if (level == levels.size()) levels.add(null);
+            int[] existing = levels.get(level);
+            if (existing == null) {
+                levels.set(level, run);
+                return;
+            }
+            run = merge(existing, run);
+            levels.set(level, null);
+            report.merges++;
+            report.mergedElements += run.length;
+        }
+    }
+
+    private static int[] merge(int[] left, int[] right) {
+        int[] out = new int[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < left.length && j < right.length) {
+            out[k++] = left[i] <= right[j] ? left[i++] : right[j++];
+        }
+        while (i < left.length) out[k++] = left[i++];
+        while (j < right.length) out[k++] = right[j++];
+        return out;
+    }
+}
+
+/**
+ * Backs the "Auto" entry: profiles the input from a fixed-size sample and dispatches to
+ * whichever algorithm has recorded the lowest mean time for that profile and size class
+ * in the session's Sort Analysis runs, falling back to simple heuristics without history.
+ */
+class AdaptiveSorter {
+    static final String AUTO_NAME = "Auto";
+    private static final int SAMPLE_SIZE = 256;
+    private static final int MIN_CANDIDATES = 2;
+    private static final int MAX_SIZE_CLASS_DISTANCE = 2;
+
+    // profile kind -> size class -> algorithm name -> {total nanos, runs}
+    private static final Map<String, Map<Integer, Map<String, long[]>>> OBSERVED = new HashMap<>();
+
+    static final class Profile {
+        final String kind;
+        final int sizeClass;
+        final double descentRatio;
+        final double inversionRatio;
+        final int distinctInSample;
+        final long range;
+
+        Profile(String kind, int sizeClass, double descentRatio, double inversionRatio, int distinctInSample, long range) {
+            this.kind = kind;
+            this.sizeClass = sizeClass;
+            this.descentRatio = descentRatio;
+            this.inversionRatio = inversionRatio;
+            this.distinctInSample = distinctInSample;
+            this.range = range;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US, "%s, runs %.0f%%, inversions %.1f%%, %d distinct in sample, range %d",
+                    kind, descentRatio * 100, inversionRatio * 100, distinctInSample, range);
+        }
+    }
+
+    public static void autoSort(int[] array, List<Operation> ops, SortMetrics metrics) {
+        long startNanos = System.nanoTime();
+        Profile profile = profile(array, metrics);
+        String choice = fastestObserved(profile);
+        boolean fromHistory = choice != null;
+        if (!fromHistory) choice = heuristic(profile, array.length);
+        AlgorithmDefinition target = find(choice);
+
+        metrics.selectedAlgorithm = target.getDisplayName();
+        metrics.inputProfile = profile + (fromHistory ? " (history)" : " (heuristic)");
+        metrics.selectionNanos = System.nanoTime() - startNanos;
+        target.sort(array, ops, metrics);
+    }
+
+    /** Records a finished run so later "Auto" sorts on similar input can pick the fastest algorithm. */
+    static void observe(String algorithmName, int[] input, long timeNanos) {
+        if (AUTO_NAME.equals(algorithmName) || input.length == 0) return;
+        Profile profile = profile(input, new SortMetrics());
+        synchronized (OBSERVED) {
+            long[] totals = OBSERVED
+                    .computeIfAbsent(profile.kind, k -> new HashMap<>())
+                    .computeIfAbsent(profile.sizeClass, k -> new HashMap<>())
+                    .computeIfAbsent(algorithmName, k -> new long[2]);
+            totals[0] += timeNanos;
+            totals[1]++;
+        }
+    }
+
+    static void clearObservations() {
+        synchronized (OBSERVED) {
+            OBSERVED.clear();
+        }
+    }
+
+    /**
+     * Samples adjacent pairs for the run count, random pairs for the inversion ratio and
+     * random values for the distinct count and range. Reads are charged to {@code metrics}.
+     */
+    static Profile profile(int[] a, SortMetrics metrics) {
+        int n = a.length;
+        int sizeClass = 31 - Integer.numberOfLeadingZeros(Math.max(1, n));
+        if (n < 2) return new Profile("sorted", sizeClass, 0, 0, n, 0);
+
+        Random rnd = new Random(n * 0x9E3779B9L);
+        int samples = Math.min(SAMPLE_SIZE, n - 1);
+        int descents = 0;
+        int inversions = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        Set<Integer> distinct = new HashSet<>();
+
+        for (int s = 0; s < samples; s++) {
+            int i = n - 1 <= SAMPLE_SIZE ? s : rnd.nextInt(n - 1);
+            if (a[i] > a[i + 1]) descents++;
+
+            int x = rnd.nextInt(n);
+            int y = rnd.nextInt(n);
+            if (x > y) {
+                int t = x; x = y; y = t;
+            }
+            if (a[x] > a[y]) inversions++;
+
+            int v = a[rnd.nextInt(n)];
+            distinct.add(v);
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+        metrics.arrayReads += 5L * samples;
+        metrics.comparisons += 2L * samples;
+
+        double descentRatio = descents / (double) samples;
+        double inversionRatio = inversions / (double) samples;
+        String kind;
+        if (descents == 0 && inversions == 0) kind = "sorted";
+        else if (descentRatio > 0.95 && inversionRatio > 0.95) kind = "reversed";
+        else if (distinct.size() * 8 <= samples) kind = "few unique";
+        else if (inversionRatio < 0.1 || descentRatio < 0.1) kind = "nearly sorted";
+        else kind = "random";
+        return new Profile(kind, sizeClass, descentRatio, inversionRatio, distinct.size(), (long) max - min);
+    }
+
+    private static String fastestObserved(Profile profile) {
+        synchronized (OBSERVED) {
+            Map<Integer, Map<String, long[]>> bySize = OBSERVED.get(profile.kind);
+            if (bySize == null) return null;
+            for (int distance = 0; distance <= MAX_SIZE_CLASS_DISTANCE; distance++) {
+                String best = fastestIn(bySize.get(profile.sizeClass - distance));
+                if (best == null && distance > 0) best = fastestIn(bySize.get(profile.sizeClass + distance));
+                if (best != null) return best;
+            }
+            return null;
+        }
+    }
+
+    private static String fastestIn(Map<String, long[]> candidates) {
+        if (candidates == null || candidates.size() < MIN_CANDIDATES) return null;
+        String best = null;
+        double bestMean = Double.MAX_VALUE;
+        for (Map.Entry<String, long[]> entry : candidates.entrySet()) {
+            double mean = entry.getValue()[0] / (double) entry.getValue()[1];
+            if (mean < bestMean && find(entry.getKey()) != null) {
+                bestMean = mean;
+                best = entry.getKey();
+            }
+        }
+        return best;
     }
 
-    public static void radixSort(int[] array, List<Operation> ops, SortMetrics metrics) {
-        TrackedArray a = new TrackedArray(array, ops, metrics);
-        if (a.length() == 0) return;
-
-        int max = a.get(0);
-        for (int i = 1; i < a.length(); i++) {
-            a.metrics.comparisons++; // logical comparison
-            if (a.get(i) > max) max = a.get(i);
-        }
+    private static String heuristic(Profile profile, int n) {
+        if (n <= 32 || profile.kind.equals("sorted")) return "Insertion Sort";
+        double estimatedInversions = profile.inversionRatio * n * (n - 1.0) / 2.0;
+        if (profile.kind.equals("nearly sorted") && estimatedInversions <= 8.0 * n) return "Insertion Sort";
+        if (profile.range < n) return "Counting Sort";
+        if (profile.kind.equals("few unique")) return "American Flag Sort";
+        if (n >= 4096) return "Radix Sort (Base 256)";
+        return "Quick Sort";
+    }
 
-        for (int exp = 1; max / exp > 0; exp *= 10) {
-            countingSortForRadix(a, exp);
+    static AlgorithmDefinition find(String name) {
+        for (AlgorithmDefinition def : VisualFrame.ALGORITHMS) {
+            if (def.getDisplayName().equals(name) && !AUTO_NAME.equals(name)) return def;
         }
-        for (int k = 0; k < a.length(); k++) a.markFinal(k);
+        return null;
     }
+}
 
-    private static void countingSortForRadix(TrackedArray a, int exp) {
-        int n = a.length();
-        a.allocateAux(n); // Output array
-        int[] output = new int[n];
-        int[] count = new int[10];
-        final int overwriteLine = 7;
+/* ---------------------------- Sort Stats & Analysis ---------------------------- */
 
-        for (int i = 0; i < n; i++) count[(a.get(i) / exp) % 10]++;
-        for (int i = 1; i < 10; i++) count[i] += count[i - 1];
+/**
+ * Two-level set-associative LRU cache model fed with the element indices a TrackedArray
+ * touches (4-byte ints, the sorted array starting at address 0). A line missing from L1 is
+ * looked up in L2 and then filled into both levels. Aux buffers are not modelled.
+ */
+class CacheSimulator {
+    static final int DEFAULT_L1_BYTES = 32 << 10;
+    static final int DEFAULT_L1_WAYS = 8;
+    static final int DEFAULT_L2_BYTES = 1 << 20;
+    static final int DEFAULT_L2_WAYS = 16;
+    static final int DEFAULT_LINE_BYTES = 64;
+
+    final int l1Bytes, l1Ways, l2Bytes, l2Ways, lineBytes;
+    private final int indexShift; // element index -> line number
+    private final Level l1;
+    private final Level l2;
+    private long clock;
+
+    public long accesses = 0;
+    public long l1Misses = 0;
+    public long l2Misses = 0;
+
+    private static final class Level {
+        final int sets;
+        final int ways;
+        final long[] tags;   // line number + 1; 0 marks an empty way
+        final long[] stamps; // last use, for LRU
+
+        Level(int bytes, int ways, int lineBytes) {
+            this.ways = ways;
+            this.sets = Math.max(1, bytes / (lineBytes * ways));
+            tags = new long[sets * ways];
+            stamps = new long[sets * ways];
+        }
 
-        for (int i = n - 1; i >= 0; i--) {
-            int digit = (a.get(i) / exp) % 10;
-            output[count[digit] - 1] = a.get(i);
-            a.writeAux(count[digit] - 1, output[count[digit] - 1]); // auxiliary array write
-            count[digit]--;
+        /** Returns true on a hit; on a miss the least recently used way of the set is replaced. */
+        boolean access(long line, long now) {
+            int base = (int) (line % sets) * ways;
+            int victim = base;
+            for (int k = base; k < base + ways; k++) {
+                if (tags[k] == line + 1) {
+                    stamps[k] = now;
+                    return true;
+                }
+                if (stamps[k] < stamps[victim]) victim = k;
+            }
+            tags[victim] = line + 1;
+            stamps[victim] = now;
+            return false;
         }
+    }
 
-        for (int i = 0; i < n; i++) {
-            a.setVisual(i, output[i], overwriteLine); // writes array implicitly
+    CacheSimulator(int l1Bytes, int l1Ways, int l2Bytes, int l2Ways, int lineBytes) {
+        if (lineBytes < Integer.BYTES || Integer.bitCount(lineBytes) != 1) {
+            throw new IllegalArgumentException("Line size must be a power of two of at least 4 bytes.");
         }
-        a.clearAux(n);
+        if (l1Ways < 1 || l2Ways < 1 || l1Bytes < lineBytes * l1Ways || l2Bytes < lineBytes * l2Ways) {
+            throw new IllegalArgumentException("Each cache level must hold at least one set of lines.");
+        }
+        this.l1Bytes = l1Bytes;
+        this.l1Ways = l1Ways;
+        this.l2Bytes = l2Bytes;
+        this.l2Ways = l2Ways;
+        this.lineBytes = lineBytes;
+        this.indexShift = Integer.numberOfTrailingZeros(lineBytes / Integer.BYTES);
+        this.l1 = new Level(l1Bytes, l1Ways, lineBytes);
+        this.l2 = new Level(l2Bytes, l2Ways, lineBytes);
     }
-}
 
+    static CacheSimulator withDefaults() {
+        return new CacheSimulator(DEFAULT_L1_BYTES, DEFAULT_L1_WAYS, DEFAULT_L2_BYTES, DEFAULT_L2_WAYS, DEFAULT_LINE_BYTES);
+    }
+
+    /** Same geometry, cold and with zeroed counters; parallel workers each get one, like private per-core caches. */
+    CacheSimulator emptyCopy() {
+        return new CacheSimulator(l1Bytes, l1Ways, l2Bytes, l2Ways, lineBytes);
+    }
 
+    public void access(int index) {
+        long line = index >>> indexShift;
+        long now = ++clock;
+        accesses++;
+        if (l1.access(line, now))
+            return;
+        l1Misses++;
+        if (!l2.access(line, now))
+            l2Misses++;
+    }
 
+    public void mergeCounts(CacheSimulator other) {
+        accesses += other.accesses;
+        l1Misses += other.l1Misses;
+        l2Misses += other.l2Misses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "L1 %d KB %d-way, L2 %d KB %d-way, %d B lines",
+                l1Bytes >> 10, l1Ways, l2Bytes >> 10, l2Ways, lineBytes);
+    }
+}
+
+/**
+ * Models the branch on each comparison result with a 2-bit saturating counter per code line,
+ * the code line standing in for the branch address. Sorts report the condition they actually
+ * branch on through {@link TrackedArray#branch}, so "taken" means that condition held; ties
+ * make "a < b" and "a > b" different branches, so neither can stand in for the other.
+ */
+class BranchPredictor {
+    private static final byte WEAKLY_NOT_TAKEN = 1;
+
+    private byte[] counters = new byte[0];
+    public long branches = 0;
+    public long taken = 0;
+    public long mispredicts = 0;
+
+    public void record(int codeLine, boolean wasTaken) {
+        int slot = Math.max(0, codeLine);
+        if (slot >= counters.length) {
+            int oldLength = counters.length;
+            counters = Arrays.copyOf(counters, Math.max(slot + 1, oldLength * 2));
+            Arrays.fill(counters, oldLength, counters.length, WEAKLY_NOT_TAKEN);
+        }
+        int state = counters[slot];
+        branches++;
+        if (wasTaken) taken++;
+        if ((state >= 2) != wasTaken) mispredicts++;
+        counters[slot] = (byte) (wasTaken ? Math.min(3, state + 1) : Math.max(0, state - 1));
+    }
+
+    public void mergeCounts(BranchPredictor other) {
+        branches += other.branches;
+        taken += other.taken;
+        mispredicts += other.mispredicts;
+    }
+}
 
-/* ---------------------------- Sort Stats & Analysis ---------------------------- */
 class SortMetrics {
     public long comparisons = 0;
     public long swaps = 0;
@@ -1426,6 +4926,32 @@ class SortMetrics {
     public long arrayWrites = 0;
     public long currentAuxSpace = 0;
     public long peakAuxSpace = 0;
+    public String selectedAlgorithm;
+    public String inputProfile;
+    public long selectionNanos = 0;
+    /** Optional cache model; when set, every TrackedArray access is fed through it. */
+    public CacheSimulator cache;
+    /** Optional branch model; when set, every TrackedArray comparison outcome is fed through it. */
+    public BranchPredictor branches;
+
+    /** Empty metrics for a parallel worker, with its own cold copies of the cache and branch models. */
+    public SortMetrics forWorker() {
+        SortMetrics worker = new SortMetrics();
+        if (cache != null) worker.cache = cache.emptyCopy();
+        if (branches != null) worker.branches = new BranchPredictor();
+        return worker;
+    }
+
+    /** Folds in the counters of a worker that sorted part of the same array. */
+    public void merge(SortMetrics other) {
+        comparisons += other.comparisons;
+        swaps += other.swaps;
+        arrayReads += other.arrayReads;
+        arrayWrites += other.arrayWrites;
+        peakAuxSpace = Math.max(peakAuxSpace, currentAuxSpace + other.peakAuxSpace);
+        if (cache != null && other.cache != null) cache.mergeCounts(other.cache);
+        if (branches != null && other.branches != null) branches.mergeCounts(other.branches);
+    }
 }
 
 class SortStats {
@@ -1440,8 +4966,31 @@ class SortStats {
     public final long comparisons;
     public final long peakAuxElements;
     public final int arraySize;
+    public final String selectedAlgorithm;
+    public final String inputProfile;
+    public final long selectionNanos;
+    // Cache model counters; cacheAccesses is 0 when the run was not simulated.
+    public final long cacheAccesses;
+    public final long l1Misses;
+    public final long l2Misses;
+    // Branch model counters; profiledBranches is 0 when the run was not profiled.
+    public final long profiledBranches;
+    public final long branchesTaken;
+    public final long mispredicts;
 
     public SortStats(String algorithmName, long timeNanos, long memoryBytes, String timeComplexity, String spaceComplexity, long swaps, long writes, long reads, long comparisons, long peakAuxElements, int arraySize) {
+        this(algorithmName, timeNanos, memoryBytes, timeComplexity, spaceComplexity, swaps, writes, reads, comparisons, peakAuxElements, arraySize, null, null, 0);
+    }
+
+    public SortStats(String algorithmName, long timeNanos, long memoryBytes, String timeComplexity, String spaceComplexity, long swaps, long writes, long reads, long comparisons, long peakAuxElements, int arraySize,
+                     String selectedAlgorithm, String inputProfile, long selectionNanos) {
+        this(algorithmName, timeNanos, memoryBytes, timeComplexity, spaceComplexity, swaps, writes, reads, comparisons, peakAuxElements, arraySize,
+                selectedAlgorithm, inputProfile, selectionNanos, 0, 0, 0, 0, 0, 0);
+    }
+
+    public SortStats(String algorithmName, long timeNanos, long memoryBytes, String timeComplexity, String spaceComplexity, long swaps, long writes, long reads, long comparisons, long peakAuxElements, int arraySize,
+                     String selectedAlgorithm, String inputProfile, long selectionNanos, long cacheAccesses, long l1Misses, long l2Misses,
+                     long profiledBranches, long branchesTaken, long mispredicts) {
         this.algorithmName = algorithmName;
         this.timeNanos = timeNanos;
         this.memoryBytes = memoryBytes;
@@ -1453,10 +5002,59 @@ class SortStats {
         this.comparisons = comparisons;
         this.peakAuxElements = peakAuxElements;
         this.arraySize = arraySize;
+        this.selectedAlgorithm = selectedAlgorithm;
+        this.inputProfile = inputProfile;
+        this.selectionNanos = selectionNanos;
+        this.cacheAccesses = cacheAccesses;
+        this.l1Misses = l1Misses;
+        this.l2Misses = l2Misses;
+        this.profiledBranches = profiledBranches;
+        this.branchesTaken = branchesTaken;
+        this.mispredicts = mispredicts;
+    }
+
+    /** Fraction of comparison branches the 2-bit predictors got wrong, or -1 when not profiled. */
+    public double mispredictRate() {
+        return profiledBranches == 0 ? -1 : mispredicts / (double) profiledBranches;
+    }
+
+    /** Fraction of accesses that missed L1, or -1 when the cache was not simulated. */
+    public double l1MissRate() {
+        return cacheAccesses == 0 ? -1 : l1Misses / (double) cacheAccesses;
+    }
+
+    /** Fraction of L1 misses that also missed L2, or -1 when the cache was not simulated. */
+    public double l2MissRate() {
+        return cacheAccesses == 0 ? -1 : l1Misses == 0 ? 0 : l2Misses / (double) l1Misses;
+    }
+
+    /** Captures a finished run, including any decision an adaptive algorithm recorded in {@code metrics}. */
+    public static SortStats fromMetrics(String algorithmName, long timeNanos, long memoryBytes, String timeComplexity, String spaceComplexity, SortMetrics metrics, int arraySize) {
+        return new SortStats(algorithmName, timeNanos, memoryBytes, timeComplexity, spaceComplexity,
+                metrics.swaps, metrics.arrayWrites, metrics.arrayReads, metrics.comparisons, metrics.peakAuxSpace, arraySize,
+                metrics.selectedAlgorithm, metrics.inputProfile, metrics.selectionNanos,
+                metrics.cache == null ? 0 : metrics.cache.accesses,
+                metrics.cache == null ? 0 : metrics.cache.l1Misses,
+                metrics.cache == null ? 0 : metrics.cache.l2Misses,
+                metrics.branches == null ? 0 : metrics.branches.branches,
+                metrics.branches == null ? 0 : metrics.branches.taken,
+                metrics.branches == null ? 0 : metrics.branches.mispredicts);
     }
 }
 
 class SortAnalysisDialog extends JDialog {
+    static final AnalysisBenchmark[] BENCHMARKS = createBenchmarks();
+    private static final int WEIGHTED_COST_COLUMN = 11;
+    // Auto Run includes the O(N²) sorts; only benchmarks that opt in may go past this size.
+    static final int MAX_ANALYSIS_SIZE = 1000000;
+    static final int MAX_SCALING_SIZE = 100000000;
+
+    private double readWeight = 1.0;
+    private double writeWeight = 1.0;
+    private double compareWeight = 1.0;
+    // Geometry for the optional cache model; runs are simulated only while the toggle is on.
+    private CacheSimulator cacheModel = CacheSimulator.withDefaults();
+
     public SortAnalysisDialog(JFrame owner, List<SortStats> history) {
         super(owner, "Sort Analysis", false);
         setSize(900, 500);
@@ -1467,8 +5065,9 @@ class SortAnalysisDialog extends JDialog {
         
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         topPanel.add(new JLabel("Array Size:"));
-        JSpinner sizeSpinner = new JSpinner(new SpinnerNumberModel(1000, 10, 1000000, 100));
-        sizeSpinner.setToolTipText("Set the size of the array to be sorted in the analysis");
+        JSpinner sizeSpinner = new JSpinner(new SpinnerNumberModel(1000, 10, MAX_SCALING_SIZE, 100));
+        sizeSpinner.setToolTipText("Set the size of the array to be sorted in the analysis (up to "
+                + MAX_ANALYSIS_SIZE + "; Core Scaling accepts up to " + MAX_SCALING_SIZE + ")");
         topPanel.add(sizeSpinner);
         
         topPanel.add(new JLabel("Distribution:"));
@@ -1490,7 +5089,49 @@ class SortAnalysisDialog extends JDialog {
         topPanel.add(autoResearchBtn);
         topPanel.add(exportBtn);
         topPanel.add(clearDataBtn);
+
+        JCheckBox cacheToggle = new JCheckBox("🧮 Simulate Cache", false);
+        cacheToggle.setToolTipText("Replay each run through an L1/L2 LRU cache model and report miss rates (adds an untimed second pass)");
+        JButton cacheSettingsBtn = new JButton("Cache Settings");
+        cacheSettingsBtn.setToolTipText(cacheModel.toString());
+        JCheckBox branchToggle = new JCheckBox("🔀 Profile Branches", false);
+        branchToggle.setToolTipText("Feed every comparison outcome through 2-bit branch predictors per code line and report the mispredict rate (adds an untimed second pass)");
+        topPanel.add(cacheToggle);
+        topPanel.add(cacheSettingsBtn);
+        topPanel.add(branchToggle);
         
+        JPanel benchmarkPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        benchmarkPanel.add(new JLabel("Benchmark:"));
+        JComboBox<AnalysisBenchmark> benchmarkCombo = new JComboBox<>(BENCHMARKS);
+        benchmarkCombo.setToolTipText("Select a specialised benchmark to run on the array size and distribution above");
+        benchmarkPanel.add(benchmarkCombo);
+        JButton runBenchmarkBtn = new JButton("⚙ Run Benchmark");
+        runBenchmarkBtn.setToolTipText(((AnalysisBenchmark) benchmarkCombo.getSelectedItem()).getDescription());
+        benchmarkCombo.addActionListener(e -> runBenchmarkBtn.setToolTipText(((AnalysisBenchmark) benchmarkCombo.getSelectedItem()).getDescription()));
+        benchmarkPanel.add(runBenchmarkBtn);
+
+        benchmarkPanel.add(Box.createHorizontalStrut(20));
+        benchmarkPanel.add(new JLabel("Cost Model:"));
+        String[] costPresets = {"Balanced", "Flash (writes x10)", "Memory-Mapped (writes x4, reads x2)", "Custom"};
+        JComboBox<String> costPresetCombo = new JComboBox<>(costPresets);
+        costPresetCombo.setToolTipText("Weights applied to reads, writes and comparisons in the Weighted Cost column");
+        JSpinner readWeightSpinner = new JSpinner(new SpinnerNumberModel(1.0, 0.0, 1000.0, 0.5));
+        JSpinner writeWeightSpinner = new JSpinner(new SpinnerNumberModel(1.0, 0.0, 1000.0, 0.5));
+        JSpinner compareWeightSpinner = new JSpinner(new SpinnerNumberModel(1.0, 0.0, 1000.0, 0.5));
+        readWeightSpinner.setToolTipText("Cost of one array read");
+        writeWeightSpinner.setToolTipText("Cost of one array write");
+        compareWeightSpinner.setToolTipText("Cost of one comparison");
+        JButton rankBtn = new JButton("🏆 Rank by Cost");
+        rankBtn.setToolTipText("List the recorded runs from cheapest to most expensive under the current cost model");
+        benchmarkPanel.add(costPresetCombo);
+        benchmarkPanel.add(new JLabel("R"));
+        benchmarkPanel.add(readWeightSpinner);
+        benchmarkPanel.add(new JLabel("W"));
+        benchmarkPanel.add(writeWeightSpinner);
+        benchmarkPanel.add(new JLabel("C"));
+        benchmarkPanel.add(compareWeightSpinner);
+        benchmarkPanel.add(rankBtn);
+
         JPanel progressPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JProgressBar progressBar = new JProgressBar(0, 100);
         progressBar.setStringPainted(true);
@@ -1500,22 +5141,17 @@ class SortAnalysisDialog extends JDialog {
         progressPanel.add(statusLabel);
 
         topContainer.add(topPanel, BorderLayout.NORTH);
+        topContainer.add(benchmarkPanel, BorderLayout.CENTER);
         topContainer.add(progressPanel, BorderLayout.SOUTH);
 
-        String[] columns = {"Algorithm", "Array Size", "Time (ms)", "Actual Memory Diff", "Peak Aux Elements", "Time Complexity", "Space Complexity", "Swaps", "Array Writes", "Array Reads", "Comparisons"};
+        String[] columns = {"Algorithm", "Array Size", "Time (ms)", "Actual Memory Diff", "Peak Aux Elements", "Time Complexity", "Space Complexity", "Swaps", "Array Writes", "Array Reads", "Comparisons", "Weighted Cost", "L1 Miss Rate", "L2 Miss Rate", "Mispredict Rate"};
         javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(columns, 0) {
             @Override
             public boolean isCellEditable(int row, int column) { return false; }
         };
 
         for (SortStats s : history) {
-            model.addRow(new Object[]{
-                s.algorithmName, s.arraySize,
-                String.format(java.util.Locale.US, "%.3f", s.timeNanos / 1_000_000.0),
-                (s.memoryBytes > 0 ? s.memoryBytes + " bytes" : "< 1 KB"),
-                s.peakAuxElements,
-                s.timeComplexity, s.spaceComplexity, s.swaps, s.writes, s.reads, s.comparisons
-            });
+            model.addRow(toRow(s));
         }
 
         JTable table = new JTable(model);
@@ -1632,6 +5268,38 @@ class SortAnalysisDialog extends JDialog {
                                     + "<p>This is a primary metric for determining the efficiency and Time Complexity class of non-linear sorting algorithms.</p>"
                                     + "</body></html>";
                             break;
+                        case "Weighted Cost":
+                            message = "<html><body style='width: 300px; padding: 10px;'>"
+                                    + "<h2>Weighted Cost</h2>"
+                                    + "<hr>"
+                                    + "<p>Reads × R + Writes × W + Comparisons × C, using the weights of the selected Cost Model.</p>"
+                                    + "<p>Raising the write weight models flash or memory-mapped storage, where writes are far more expensive than reads. Write-minimising sorts such as Cycle Sort rank much better there.</p>"
+                                    + "</body></html>";
+                            break;
+                        case "L1 Miss Rate":
+                            message = "<html><body style='width: 300px; padding: 10px;'>"
+                                    + "<h2>L1 Miss Rate</h2>"
+                                    + "<hr>"
+                                    + "<p>The share of array accesses that missed the simulated L1 cache, shown when Simulate Cache is on.</p>"
+                                    + "<p>Algorithms that sweep the array sequentially (Merge Sort, Radix Sort) reuse each cache line many times; Heap Sort jumps between parent and child indices far apart, so on large arrays most of its accesses miss.</p>"
+                                    + "</body></html>";
+                            break;
+                        case "L2 Miss Rate":
+                            message = "<html><body style='width: 300px; padding: 10px;'>"
+                                    + "<h2>L2 Miss Rate</h2>"
+                                    + "<hr>"
+                                    + "<p>The share of L1 misses that also missed the simulated L2 cache and would go to main memory.</p>"
+                                    + "<p>Once the array no longer fits in L2, this is what separates algorithms with similar comparison counts.</p>"
+                                    + "</body></html>";
+                            break;
+                        case "Mispredict Rate":
+                            message = "<html><body style='width: 300px; padding: 10px;'>"
+                                    + "<h2>Mispredict Rate</h2>"
+                                    + "<hr>"
+                                    + "<p>The share of comparison branches a 2-bit saturating counter per code line would have predicted wrongly, shown when Profile Branches is on.</p>"
+                                    + "<p>Near 50% means the outcome is a coin flip (e.g. Quick Sort partitioning random data) and a branchless kernel would pay off; near 0% means the pattern is predictable, as on sorted or few-unique inputs.</p>"
+                                    + "</body></html>";
+                            break;
                         default:
                             return;
                     }
@@ -1644,14 +5312,113 @@ class SortAnalysisDialog extends JDialog {
         add(topContainer, BorderLayout.NORTH);
         add(new JScrollPane(table), BorderLayout.CENTER);
 
+        Runnable applyCostWeights = () -> {
+            readWeight = ((Number) readWeightSpinner.getValue()).doubleValue();
+            writeWeight = ((Number) writeWeightSpinner.getValue()).doubleValue();
+            compareWeight = ((Number) compareWeightSpinner.getValue()).doubleValue();
+            for (int row = 0; row < model.getRowCount() && row < history.size(); row++) {
+                if (!"-".equals(model.getValueAt(row, WEIGHTED_COST_COLUMN))) {
+                    model.setValueAt(formatCost(history.get(row)), row, WEIGHTED_COST_COLUMN);
+                }
+            }
+        };
+        boolean[] applyingPreset = {false};
+        javax.swing.event.ChangeListener weightListener = e -> {
+            if (!applyingPreset[0]) costPresetCombo.setSelectedItem("Custom");
+            applyCostWeights.run();
+        };
+        readWeightSpinner.addChangeListener(weightListener);
+        writeWeightSpinner.addChangeListener(weightListener);
+        compareWeightSpinner.addChangeListener(weightListener);
+        costPresetCombo.addActionListener(e -> {
+            double[] weights;
+            switch ((String) costPresetCombo.getSelectedItem()) {
+                case "Flash (writes x10)":
+                    weights = new double[] {1.0, 10.0, 1.0};
+                    break;
+                case "Memory-Mapped (writes x4, reads x2)":
+                    weights = new double[] {2.0, 4.0, 1.0};
+                    break;
+                case "Balanced":
+                    weights = new double[] {1.0, 1.0, 1.0};
+                    break;
+                default:
+                    return;
+            }
+            applyingPreset[0] = true;
+            readWeightSpinner.setValue(weights[0]);
+            writeWeightSpinner.setValue(weights[1]);
+            compareWeightSpinner.setValue(weights[2]);
+            applyingPreset[0] = false;
+            applyCostWeights.run();
+        });
+
+        rankBtn.addActionListener(e -> {
+            List<SortStats> ranked = new ArrayList<>();
+            for (int row = 0; row < model.getRowCount() && row < history.size(); row++) {
+                if (!"-".equals(model.getValueAt(row, WEIGHTED_COST_COLUMN))) ranked.add(history.get(row));
+            }
+            if (ranked.isEmpty()) {
+                statusLabel.setText("Run an analysis first to rank algorithms.");
+                return;
+            }
+            ranked.sort(Comparator.comparingDouble(this::weightedCost));
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(java.util.Locale.US, "Cost model: reads x%.1f, writes x%.1f, comparisons x%.1f%n%n",
+                    readWeight, writeWeight, compareWeight));
+            for (int i = 0; i < ranked.size(); i++) {
+                SortStats s = ranked.get(i);
+                text.append(String.format(java.util.Locale.US, "%3d. %-60s N=%-10d %s%n", i + 1, s.algorithmName, s.arraySize, formatCost(s)));
+            }
+            JTextArea area = new JTextArea(text.toString(), 20, 100);
+            area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            area.setEditable(false);
+            JOptionPane.showMessageDialog(this, new JScrollPane(area), "Ranking by Weighted Cost", JOptionPane.INFORMATION_MESSAGE);
+        });
+
+        cacheSettingsBtn.addActionListener(e -> {
+            JSpinner l1Kb = new JSpinner(new SpinnerNumberModel(cacheModel.l1Bytes >> 10, 1, 1 << 16, 16));
+            JSpinner l1Ways = new JSpinner(new SpinnerNumberModel(cacheModel.l1Ways, 1, 64, 1));
+            JSpinner l2Kb = new JSpinner(new SpinnerNumberModel(cacheModel.l2Bytes >> 10, 1, 1 << 20, 256));
+            JSpinner l2Ways = new JSpinner(new SpinnerNumberModel(cacheModel.l2Ways, 1, 64, 1));
+            JComboBox<Integer> lineBytes = new JComboBox<>(new Integer[] { 16, 32, 64, 128, 256 });
+            lineBytes.setSelectedItem(cacheModel.lineBytes);
+            JPanel form = new JPanel(new GridLayout(0, 2, 6, 4));
+            form.add(new JLabel("L1 size (KB):"));
+            form.add(l1Kb);
+            form.add(new JLabel("L1 associativity:"));
+            form.add(l1Ways);
+            form.add(new JLabel("L2 size (KB):"));
+            form.add(l2Kb);
+            form.add(new JLabel("L2 associativity:"));
+            form.add(l2Ways);
+            form.add(new JLabel("Line size (bytes):"));
+            form.add(lineBytes);
+            if (JOptionPane.showConfirmDialog(this, form, "Cache Settings", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+                return;
+            try {
+                cacheModel = new CacheSimulator(((Integer) l1Kb.getValue()) << 10, (Integer) l1Ways.getValue(),
+                        ((Integer) l2Kb.getValue()) << 10, (Integer) l2Ways.getValue(), (Integer) lineBytes.getSelectedItem());
+                cacheSettingsBtn.setToolTipText(cacheModel.toString());
+                statusLabel.setText("Cache model: " + cacheModel);
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Invalid Cache Settings", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
         clearDataBtn.addActionListener(e -> {
             history.clear();
             model.setRowCount(0);
+            AdaptiveSorter.clearObservations();
             statusLabel.setText("Analysis data cleared.");
         });
 
         autoRunBtn.addActionListener(e -> {
             int size = (Integer) sizeSpinner.getValue();
+            if (size > MAX_ANALYSIS_SIZE) {
+                statusLabel.setText("Auto Run is limited to " + MAX_ANALYSIS_SIZE + " elements; only Core Scaling runs larger arrays.");
+                return;
+            }
             String distribution = (String) distributionCombo.getSelectedItem();
             autoRunBtn.setEnabled(false);
             autoResearchBtn.setEnabled(false);
@@ -1679,38 +5446,10 @@ class SortAnalysisDialog extends JDialog {
             });
             timer.start();
 
+            CacheSimulator cacheTemplate = cacheToggle.isSelected() ? cacheModel : null;
+            boolean profileBranches = branchToggle.isSelected();
             Thread t = new Thread(() -> {
-                int[] arr = new int[size];
-                java.util.Random rnd = new java.util.Random();
-                
-                switch (distribution) {
-                    case "Nearly Sorted":
-                        for (int i = 0; i < size; i++) arr[i] = i;
-                        for (int i = 0; i < size * 0.05; i++) { // 5% noise
-                            int i1 = rnd.nextInt(size);
-                            int i2 = rnd.nextInt(size);
-                            int temp = arr[i1];
-                            arr[i1] = arr[i2];
-                            arr[i2] = temp;
-                        }
-                        break;
-                    case "Reversed":
-                        for (int i = 0; i < size; i++) arr[i] = size - i;
-                        break;
-                    case "Few Unique":
-                        for (int i = 0; i < size; i++) arr[i] = (rnd.nextInt(5) + 1) * (size / 5);
-                        break;
-                    case "Gaussian":
-                        for (int i = 0; i < size; i++) {
-                            int val = (int) (rnd.nextGaussian() * (size / 4) + (size / 2));
-                            arr[i] = Math.max(1, Math.min(size, val));
-                        }
-                        break;
-                    case "Random":
-                    default:
-                        for(int i = 0; i < size; i++) arr[i] = rnd.nextInt(400) + 5;
-                        break;
-                }
+                int[] arr = generateDistribution(distribution, size, new java.util.Random());
                 
                 java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(cores);
 
@@ -1726,21 +5465,17 @@ class SortAnalysisDialog extends JDialog {
                         long memAfter = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
                         long memUsed = Math.max(0, memAfter - memBefore);
                         
+                        simulateHardware(alg, arr, metrics, cacheTemplate, profileBranches);
                         String algNameWithDist = alg.getDisplayName() + " (" + distribution + ")";
-                        SortStats stats = new SortStats(algNameWithDist, algorithmTimeNanos, memUsed, alg.getTimeComplexity(), alg.getSpaceComplexity(), metrics.swaps, metrics.arrayWrites, metrics.arrayReads, metrics.comparisons, metrics.peakAuxSpace, size);
+                        SortStats stats = SortStats.fromMetrics(algNameWithDist, algorithmTimeNanos, memUsed, alg.getTimeComplexity(), alg.getSpaceComplexity(), metrics, size);
+                        AdaptiveSorter.observe(alg.getDisplayName(), arr, algorithmTimeNanos);
                         
                         SwingUtilities.invokeLater(() -> {
                             completed[0]++;
                             int percent = (int) ((completed[0] * 100.0) / totalAlgorithms);
 
                             history.add(stats);
-                            model.addRow(new Object[]{
-                                stats.algorithmName, stats.arraySize,
-                                String.format(java.util.Locale.US, "%.3f", stats.timeNanos / 1_000_000.0),
-                                (stats.memoryBytes > 0 ? stats.memoryBytes + " bytes" : "< 1 KB"),
-                                stats.peakAuxElements,
-                                stats.timeComplexity, stats.spaceComplexity, stats.swaps, stats.writes, stats.reads, stats.comparisons
-                            });
+                            model.addRow(toRow(stats));
                             progressBar.setValue(percent);
 
                             if (completed[0] == totalAlgorithms) {
@@ -1789,6 +5524,8 @@ class SortAnalysisDialog extends JDialog {
             });
             timer.start();
 
+            CacheSimulator cacheTemplate = cacheToggle.isSelected() ? cacheModel : null;
+            boolean profileBranches = branchToggle.isSelected();
             Thread t = new Thread(() -> {
                 java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(cores);
                 java.util.Random rnd = new java.util.Random();
@@ -1801,35 +5538,7 @@ class SortAnalysisDialog extends JDialog {
                         executor.submit(() -> {
                             List<SortStats> trialStats = new ArrayList<>();
                             for (int trial = 0; trial < trialsPerSize; trial++) {
-                                int[] arr = new int[currentSize];
-                                switch (distribution) {
-                                    case "Nearly Sorted":
-                                        for (int i = 0; i < currentSize; i++) arr[i] = i;
-                                        for (int i = 0; i < currentSize * 0.05; i++) {
-                                            int i1 = rnd.nextInt(currentSize);
-                                            int i2 = rnd.nextInt(currentSize);
-                                            int temp = arr[i1];
-                                            arr[i1] = arr[i2];
-                                            arr[i2] = temp;
-                                        }
-                                        break;
-                                    case "Reversed":
-                                        for (int i = 0; i < currentSize; i++) arr[i] = currentSize - i;
-                                        break;
-                                    case "Few Unique":
-                                        for (int i = 0; i < currentSize; i++) arr[i] = (rnd.nextInt(5) + 1) * (currentSize / 5);
-                                        break;
-                                    case "Gaussian":
-                                        for (int i = 0; i < currentSize; i++) {
-                                            int val = (int) (rnd.nextGaussian() * (currentSize / 4) + (currentSize / 2));
-                                            arr[i] = Math.max(1, Math.min(currentSize, val));
-                                        }
-                                        break;
-                                    case "Random":
-                                    default:
-                                        for(int i = 0; i < currentSize; i++) arr[i] = rnd.nextInt(400) + 5;
-                                        break;
-                                }
+                                int[] arr = generateDistribution(distribution, currentSize, rnd);
                                 
                                 int[] copy = arr.clone();
                                 SortMetrics metrics = new SortMetrics();
@@ -1841,8 +5550,10 @@ class SortAnalysisDialog extends JDialog {
                                 long algorithmTimeNanos = System.nanoTime() - startNanos;
                                 long memAfter = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
                                 long memUsed = Math.max(0, memAfter - memBefore);
+                                simulateHardware(alg, arr, metrics, cacheTemplate, profileBranches);
                                 
-                                SortStats stats = new SortStats(algNameWithDist, algorithmTimeNanos, memUsed, alg.getTimeComplexity(), alg.getSpaceComplexity(), metrics.swaps, metrics.arrayWrites, metrics.arrayReads, metrics.comparisons, metrics.peakAuxSpace, currentSize);
+                                SortStats stats = SortStats.fromMetrics(algNameWithDist, algorithmTimeNanos, memUsed, alg.getTimeComplexity(), alg.getSpaceComplexity(), metrics, currentSize);
+                                AdaptiveSorter.observe(alg.getDisplayName(), arr, algorithmTimeNanos);
                                 trialStats.add(stats);
                             }
                             
@@ -1882,27 +5593,21 @@ class SortAnalysisDialog extends JDialog {
                             SwingUtilities.invokeLater(() -> {
                                 for(SortStats s : trialStats) {
                                     history.add(s);
-                                    model.addRow(new Object[]{
-                                        s.algorithmName, s.arraySize,
-                                        String.format(java.util.Locale.US, "%.3f", s.timeNanos / 1_000_000.0),
-                                        (s.memoryBytes > 0 ? s.memoryBytes + " bytes" : "< 1 KB"),
-                                        s.peakAuxElements,
-                                        s.timeComplexity, s.spaceComplexity, s.swaps, s.writes, s.reads, s.comparisons
-                                    });
+                                    model.addRow(toRow(s));
                                 }
                                 history.add(meanStats);
                                 model.addRow(new Object[]{
                                     meanStats.algorithmName, meanStats.arraySize,
                                     String.format(java.util.Locale.US, "%.3f", meanStats.timeNanos / 1_000_000.0),
                                     (meanStats.memoryBytes > 0 ? meanStats.memoryBytes + " bytes" : "0 bytes"),
-                                    "-", meanStats.timeComplexity, meanStats.spaceComplexity, meanStats.swaps, "-", "-", meanStats.comparisons
+                                    "-", meanStats.timeComplexity, meanStats.spaceComplexity, meanStats.swaps, "-", "-", meanStats.comparisons, "-", "-", "-", "-"
                                 });
                                 history.add(stdDevStats);
                                 model.addRow(new Object[]{
                                     stdDevStats.algorithmName, stdDevStats.arraySize,
                                     String.format(java.util.Locale.US, "%.3f", stdDevStats.timeNanos / 1_000_000.0),
                                     (stdDevStats.memoryBytes > 0 ? stdDevStats.memoryBytes + " bytes" : "0 bytes"),
-                                    "-", stdDevStats.timeComplexity, stdDevStats.spaceComplexity, stdDevStats.swaps, "-", "-", stdDevStats.comparisons
+                                    "-", stdDevStats.timeComplexity, stdDevStats.spaceComplexity, stdDevStats.swaps, "-", "-", stdDevStats.comparisons, "-", "-", "-", "-"
                                 });
                                 
                                 if (completed[0] == totalTasks) {
@@ -1921,6 +5626,48 @@ class SortAnalysisDialog extends JDialog {
             t.start();
         });
 
+        runBenchmarkBtn.addActionListener(e -> {
+            AnalysisBenchmark benchmark = (AnalysisBenchmark) benchmarkCombo.getSelectedItem();
+            int size = (Integer) sizeSpinner.getValue();
+            if (size > benchmark.getMaxSize()) {
+                statusLabel.setText(benchmark.getDisplayName() + " is limited to " + benchmark.getMaxSize() + " elements.");
+                return;
+            }
+            String distribution = (String) distributionCombo.getSelectedItem();
+            autoRunBtn.setEnabled(false);
+            autoResearchBtn.setEnabled(false);
+            runBenchmarkBtn.setEnabled(false);
+
+            progressBar.setIndeterminate(true);
+            progressBar.setVisible(true);
+            statusLabel.setText("Running " + benchmark.getDisplayName() + " on " + size + " elements...");
+
+            Thread t = new Thread(() -> {
+                String outcome;
+                try {
+                    benchmark.run(size, distribution, stats -> SwingUtilities.invokeLater(() -> {
+                        history.add(stats);
+                        model.addRow(toRow(stats));
+                    }));
+                    outcome = benchmark.getDisplayName() + " complete.";
+                } catch (OutOfMemoryError ex) {
+                    outcome = "Not enough heap for " + size + " elements. Increase -Xmx or lower the array size.";
+                } catch (Exception ex) {
+                    outcome = "Benchmark failed: " + ex.getMessage();
+                }
+                String message = outcome;
+                SwingUtilities.invokeLater(() -> {
+                    autoRunBtn.setEnabled(true);
+                    autoResearchBtn.setEnabled(true);
+                    runBenchmarkBtn.setEnabled(true);
+                    progressBar.setIndeterminate(false);
+                    progressBar.setVisible(false);
+                    statusLabel.setText(message);
+                });
+            }, "Benchmark-Worker");
+            t.start();
+        });
+
         exportBtn.addActionListener(e -> {
             JFileChooser chooser = new JFileChooser();
             chooser.setDialogTitle("Save Export as CSV");
@@ -1930,11 +5677,13 @@ class SortAnalysisDialog extends JDialog {
                     file = new java.io.File(file.getParentFile(), file.getName() + ".csv");
                 }
                 try (java.io.PrintWriter writer = new java.io.PrintWriter(file)) {
-                    writer.println("Algorithm,Array Size,Time (ms),Actual Memory Diff,Peak Aux Elements,Time Complexity,Space Complexity,Swaps,Array Writes,Array Reads,Comparisons");
+                    writer.println("Algorithm,Array Size,Time (ms),Actual Memory Diff,Peak Aux Elements,Time Complexity,Space Complexity,Swaps,Array Writes,Array Reads,Comparisons,Weighted Cost,Selected Algorithm,Input Profile,Selection Time (ms),Cache Accesses,L1 Misses,L2 Misses,Profiled Branches,Branches Taken,Mispredicts");
                     for (SortStats s : history) {
-                        writer.printf(java.util.Locale.US, "%s,%d,%.3f,%d,%d,%s,%s,%d,%d,%d,%d%n",
+                        writer.printf(java.util.Locale.US, "%s,%d,%.3f,%d,%d,%s,%s,%d,%d,%d,%d,%.1f,%s,\"%s\",%.3f,%d,%d,%d,%d,%d,%d%n",
                             s.algorithmName, s.arraySize, (s.timeNanos / 1_000_000.0),
-                            s.memoryBytes, s.peakAuxElements, s.timeComplexity, s.spaceComplexity, s.swaps, s.writes, s.reads, s.comparisons);
+                            s.memoryBytes, s.peakAuxElements, s.timeComplexity, s.spaceComplexity, s.swaps, s.writes, s.reads, s.comparisons, weightedCost(s),
+                            s.selectedAlgorithm == null ? "" : s.selectedAlgorithm, s.inputProfile == null ? "" : s.inputProfile, s.selectionNanos / 1_000_000.0,
+                            s.cacheAccesses, s.l1Misses, s.l2Misses, s.profiledBranches, s.branchesTaken, s.mispredicts);
                     }
                     JOptionPane.showMessageDialog(this, "Export complete!", "Success", JOptionPane.INFORMATION_MESSAGE);
                 } catch (Exception ex) {
@@ -1943,6 +5692,407 @@ class SortAnalysisDialog extends JDialog {
             }
         });
     }
+
+    private static AnalysisBenchmark[] createBenchmarks() {
+        return new AnalysisBenchmark[] {
+                new AnalysisBenchmark("Core Scaling (Parallel Radix)",
+                        "Sort the same array with Parallel Radix Sort on 1..N threads and report speed-up over one thread",
+                        SortBenchmarks::coreScaling, MAX_SCALING_SIZE),
+                new AnalysisBenchmark("Kernel Throughput (Scalar vs Vector)",
+                        "Time the partition, histogram and small-block kernels, and the quicksort built on them, with the scalar and Vector API kernels",
+                        SortBenchmarks::kernelThroughput),
+                new AnalysisBenchmark("External Merge Sort (Temp File)",
+                        "Write the array to a temp file and sort it on disk in runs of N/16, reporting I/O bytes and merge passes",
+                        SortBenchmarks::externalSort),
+                new AnalysisBenchmark("Primitive Widths (int / long / double / key-value)",
+                        "Radix sort the same values as int[], long[], double[] and int keys with an int payload",
+                        SortBenchmarks::primitiveWidths),
+                new AnalysisBenchmark("Object Records (Comparator vs Packed Key)",
+                        "Sort record objects scattered on the heap by comparator, and by packed (key, index) longs",
+                        SortBenchmarks::objectRecords),
+                new AnalysisBenchmark("Partial Sort / Top-K / Quickselect",
+                        "Compare selecting the median, the k = sqrt(N) smallest and a partial sort against a full heap sort",
+                        SortBenchmarks::partialSorts),
+                new AnalysisBenchmark("Online Insertion (Streamed Input)",
+                        "Feed the values one at a time into the online sorter and report per-insert latency and throughput next to batch sorts",
+                        SortBenchmarks::onlineInsertion),
+                new AnalysisBenchmark("Bounded Keys (Counting / Bucket vs Comparison)",
+                        "Run counting and bucket sort against Arrays.sort, merge sort and heap sort on Few Unique and the selected distribution",
+                        SortBenchmarks::boundedKeys)
+        };
+    }
+
+    private Object[] toRow(SortStats s) {
+        String name = s.selectedAlgorithm == null ? s.algorithmName : s.algorithmName + " → " + s.selectedAlgorithm;
+        return new Object[]{
+            name, s.arraySize,
+            String.format(java.util.Locale.US, "%.3f", s.timeNanos / 1_000_000.0),
+            (s.memoryBytes > 0 ? s.memoryBytes + " bytes" : "< 1 KB"),
+            s.peakAuxElements,
+            s.timeComplexity, s.spaceComplexity, s.swaps, s.writes, s.reads, s.comparisons,
+            formatCost(s), formatRate(s.l1MissRate()), formatRate(s.l2MissRate()), formatRate(s.mispredictRate())
+        };
+    }
+
+    private static String formatRate(double rate) {
+        return rate < 0 ? "-" : String.format(java.util.Locale.US, "%.2f%%", rate * 100);
+    }
+
+    /**
+     * Replays {@code alg} on a copy of {@code input} through a cold copy of {@code cacheTemplate}
+     * and/or fresh branch predictors and attaches the results to {@code metrics}. Runs untimed so
+     * the simulation does not inflate Time (ms).
+     */
+    private static void simulateHardware(AlgorithmDefinition alg, int[] input, SortMetrics metrics,
+            CacheSimulator cacheTemplate, boolean profileBranches) {
+        if (cacheTemplate == null && !profileBranches)
+            return;
+        SortMetrics probe = new SortMetrics();
+        probe.cache = cacheTemplate == null ? null : cacheTemplate.emptyCopy();
+        probe.branches = profileBranches ? new BranchPredictor() : null;
+        alg.sort(input.clone(), null, probe);
+        metrics.cache = probe.cache;
+        metrics.branches = probe.branches;
+    }
+
+    private double weightedCost(SortStats s) {
+        return s.reads * readWeight + s.writes * writeWeight + s.comparisons * compareWeight;
+    }
+
+    private String formatCost(SortStats s) {
+        return String.format(java.util.Locale.US, "%.1f", weightedCost(s));
+    }
+
+    static int[] generateDistribution(String distribution, int size, java.util.Random rnd) {
+        int[] arr = new int[size];
+        switch (distribution) {
+            case "Nearly Sorted":
+                for (int i = 0; i < size; i++) arr[i] = i;
+                for (int i = 0; i < size * 0.05; i++) { // 5% noise
+                    int i1 = rnd.nextInt(size);
+                    int i2 = rnd.nextInt(size);
+                    int temp = arr[i1];
+                    arr[i1] = arr[i2];
+                    arr[i2] = temp;
+                }
+                break;
+            case "Reversed":
+                for (int i = 0; i < size; i++) arr[i] = size - i;
+                break;
+            case "Few Unique":
+                for (int i = 0; i < size; i++) arr[i] = (rnd.nextInt(5) + 1) * (size / 5);
+                break;
+            case "Gaussian":
+                for (int i = 0; i < size; i++) {
+                    int val = (int) (rnd.nextGaussian() * (size / 4) + (size / 2));
+                    arr[i] = Math.max(1, Math.min(size, val));
+                }
+                break;
+            case "Random":
+            default:
+                for (int i = 0; i < size; i++) arr[i] = rnd.nextInt(400) + 5;
+                break;
+        }
+        return arr;
+    }
+}
+
+@FunctionalInterface
+interface BenchmarkRunner {
+    void run(int size, String distribution, Consumer<SortStats> results) throws Exception;
+}
+
+class AnalysisBenchmark {
+    private final String displayName;
+    private final String description;
+    private final BenchmarkRunner runner;
+    private final int maxSize;
+
+    public AnalysisBenchmark(String displayName, String description, BenchmarkRunner runner) {
+        this(displayName, description, runner, SortAnalysisDialog.MAX_ANALYSIS_SIZE);
+    }
+
+    public AnalysisBenchmark(String displayName, String description, BenchmarkRunner runner, int maxSize) {
+        this.displayName = displayName;
+        this.description = description;
+        this.runner = runner;
+        this.maxSize = maxSize;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void run(int size, String distribution, Consumer<SortStats> results) throws Exception {
+        runner.run(size, distribution, results);
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
+
+/* ---------------------------- Specialised benchmarks ---------------------------- */
+class SortBenchmarks {
+    public static void coreScaling(int size, String distribution, Consumer<SortStats> results) {
+        int[] input = SortAnalysisDialog.generateDistribution(distribution, size, new Random());
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        // Warm the JIT so the single-thread baseline is not penalised for running first.
+        SortingAlgorithms.parallelRadixSort(Arrays.copyOf(input, Math.min(size, 1 << 20)), null, new SortMetrics(), cores);
+
+        long baselineNanos = 0;
+        for (int threads = 1; threads <= cores; threads++) {
+            int[] copy = input.clone();
+            SortMetrics metrics = new SortMetrics();
+            long memBefore = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+            long startNanos = System.nanoTime();
+            SortingAlgorithms.parallelRadixSort(copy, null, metrics, threads);
+            long algorithmTimeNanos = System.nanoTime() - startNanos;
+            long memAfter = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+            long memUsed = Math.max(0, memAfter - memBefore);
+            if (threads == 1) baselineNanos = algorithmTimeNanos;
+
+            String name = String.format(Locale.US, "Parallel Radix Sort [%d threads, %.2fx] (%s)",
+                    threads, baselineNanos / (double) algorithmTimeNanos, distribution);
+            results.accept(new SortStats(name, algorithmTimeNanos, memUsed, "O(N / P)", "O(N)", metrics.swaps, metrics.arrayWrites, metrics.arrayReads, metrics.comparisons, metrics.peakAuxSpace, size));
+        }
+    }
+
+    public static void externalSort(int size, String distribution, Consumer<SortStats> results) throws IOException {
+        int[] input = SortAnalysisDialog.generateDistribution(distribution, size, new Random());
+        Path inputFile = Files.createTempFile("external-input", ".bin");
+        Path outputFile = Files.createTempFile("external-output", ".bin");
+        try {
+            ByteBuffer bytes = ByteBuffer.allocate(size * Integer.BYTES);
+            bytes.asIntBuffer().put(input);
+            Files.write(inputFile, bytes.array());
+            input = null; // the sort below must not rely on the in-heap copy
+
+            int runElements = Math.max(1024, size / 16);
+            ExternalSorter sorter = new ExternalSorter(runElements, ExternalSorter.DEFAULT_FAN_IN, ExternalSorter.DEFAULT_BUFFER_BYTES);
+            ExternalSorter.Report report = sorter.sort(inputFile, outputFile);
+
+            String name = String.format(Locale.US, "External Merge Sort [%d runs, %d merge passes, %.1f MB read, %.1f MB written] (%s)",
+                    report.runs, report.mergePasses, report.bytesRead / 1_048_576.0, report.bytesWritten / 1_048_576.0, distribution);
+            results.accept(new SortStats(name, report.timeNanos, 0, "O(N log N)", "O(M)", 0, 0, 0, 0, runElements, size));
+        } finally {
+            Files.deleteIfExists(inputFile);
+            Files.deleteIfExists(outputFile);
+        }
+    }
+
+    public static void primitiveWidths(int size, String distribution, Consumer<SortStats> results) {
+        int[] input = SortAnalysisDialog.generateDistribution(distribution, size, new Random());
+        long[] longs = new long[size];
+        double[] doubles = new double[size];
+        int[] payload = new int[size];
+        for (int i = 0; i < size; i++) {
+            // Spread values over the full width so the upper bytes are not all skipped.
+            longs[i] = (long) input[i] * 0x9E3779B97F4A7C15L;
+            doubles[i] = input[i] - size / 2.0;
+            payload[i] = i;
+        }
+
+        SortMetrics intMetrics = new SortMetrics();
+        long startNanos = System.nanoTime();
+        SortingAlgorithms.radixSortLsd256(input.clone(), null, intMetrics);
+        reportWidth("Radix Sort int[]", System.nanoTime() - startNanos, intMetrics, distribution, size, results);
+
+        SortMetrics longMetrics = new SortMetrics();
+        startNanos = System.nanoTime();
+        SortingAlgorithms.radixSort(longs, longMetrics);
+        reportWidth("Radix Sort long[]", System.nanoTime() - startNanos, longMetrics, distribution, size, results);
+
+        SortMetrics doubleMetrics = new SortMetrics();
+        startNanos = System.nanoTime();
+        SortingAlgorithms.radixSort(doubles, doubleMetrics);
+        reportWidth("Radix Sort double[]", System.nanoTime() - startNanos, doubleMetrics, distribution, size, results);
+
+        SortMetrics pairMetrics = new SortMetrics();
+        startNanos = System.nanoTime();
+        SortingAlgorithms.radixSort(input.clone(), payload, pairMetrics);
+        reportWidth("Radix Sort int[] keys + int[] values", System.nanoTime() - startNanos, pairMetrics, distribution, size, results);
+    }
+
+    private static void reportWidth(String name, long timeNanos, SortMetrics metrics, String distribution, int size, Consumer<SortStats> results) {
+        results.accept(new SortStats(name + " (" + distribution + ")", timeNanos, 0, "O(N)", "O(N)",
+                metrics.swaps, metrics.arrayWrites, metrics.arrayReads, metrics.comparisons, metrics.peakAuxSpace, size));
+    }
+
+    /** Stand-in for a production row: a few fields plus a reference to chase. */
+    private static final class BenchmarkRecord {
+        final int id;
+        final int score;
+        final String label;
+
+        BenchmarkRecord(int id, int score, String label) {
+            this.id = id;
+            this.score = score;
+            this.label = label;
+        }
+    }
+
+    public static void objectRecords(int size, String distribution, Consumer<SortStats> results) {
+        int[] scores = SortAnalysisDialog.generateDistribution(distribution, size, new Random());
+        BenchmarkRecord[] records = new BenchmarkRecord[size];
+        for (int i = 0; i < size; i++) {
+            records[i] = new BenchmarkRecord(i, scores[i], "row-" + i);
+        }
+        // Shuffle the references so array order no longer matches allocation order on the heap.
+        Random rnd = new Random();
+        for (int i = size - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            BenchmarkRecord tmp = records[i];
+            records[i] = records[j];
+            records[j] = tmp;
+        }
+        Comparator<BenchmarkRecord> byScore = Comparator.comparingInt(r -> r.score);
+
+        BenchmarkRecord[] copy = records.clone();
+        SortMetrics comparatorMetrics = new SortMetrics();
+        long startNanos = System.nanoTime();
+        SortingAlgorithms.sort(copy, byScore, comparatorMetrics);
+        results.accept(new SortStats("Comparator Merge Sort on records (" + distribution + ")", System.nanoTime() - startNanos, 0,
+                "O(N log N)", "O(N)", comparatorMetrics.swaps, comparatorMetrics.arrayWrites, comparatorMetrics.arrayReads,
+                comparatorMetrics.comparisons, comparatorMetrics.peakAuxSpace, size));
+
+        copy = records.clone();
+        SortMetrics packedMetrics = new SortMetrics();
+        startNanos = System.nanoTime();
+        SortingAlgorithms.sortByKey(copy, r -> r.score, packedMetrics);
+        results.accept(new SortStats("Packed Key Radix Sort on records (" + distribution + ")", System.nanoTime() - startNanos, 0,
+                "O(N)", "O(N)", packedMetrics.swaps, packedMetrics.arrayWrites, packedMetrics.arrayReads,
+                packedMetrics.comparisons, packedMetrics.peakAuxSpace, size));
+
+        copy = records.clone();
+        startNanos = System.nanoTime();
+        Arrays.sort(copy, byScore);
+        results.accept(new SortStats("Arrays.sort(Comparator) on records (" + distribution + ")", System.nanoTime() - startNanos, 0,
+                "O(N log N)", "O(N)", 0, 0, 0, 0, 0, size));
+    }
+
+    @FunctionalInterface
+    private interface PartialSortRun {
+        void run(int[] array, SortMetrics metrics);
+    }
+
+    public static void partialSorts(int size, String distribution, Consumer<SortStats> results) {
+        int[] input = SortAnalysisDialog.generateDistribution(distribution, size, new Random());
+        int k = Math.max(1, (int) Math.sqrt(size));
+
+        reportPartial("Quickselect median", "O(N)", "O(1)", input, distribution, results,
+                (a, m) -> SortingAlgorithms.quickSelect(a, size / 2, null, m));
+        reportPartial("Quickselect k = " + k, "O(N)", "O(1)", input, distribution, results,
+                (a, m) -> SortingAlgorithms.quickSelect(a, k - 1, null, m));
+        reportPartial("Top-K Heap k = " + k, "O(N log K)", "O(1)", input, distribution, results,
+                (a, m) -> SortingAlgorithms.topK(a, k, null, m));
+        reportPartial("Partial Sort k = " + k, "O(N + K log K)", "O(1)", input, distribution, results,
+                (a, m) -> SortingAlgorithms.partialSort(a, k, null, m));
+        reportPartial("Full Heap Sort", "O(N log N)", "O(1)", input, distribution, results,
+                (a, m) -> SortingAlgorithms.heapSort(a, null, m));
+    }
+
+    private static void reportPartial(String name, String timeComplexity, String spaceComplexity, int[] input,
+            String distribution, Consumer<SortStats> results, PartialSortRun run) {
+        int[] copy = input.clone();
+        SortMetrics metrics = new SortMetrics();
+        long startNanos = System.nanoTime();
+        run.run(copy, metrics);
+        long algorithmTimeNanos = System.nanoTime() - startNanos;
+        results.accept(new SortStats(name + " (" + distribution + ")", algorithmTimeNanos, 0, timeComplexity, spaceComplexity,
+                metrics.swaps, metrics.arrayWrites, metrics.arrayReads, metrics.comparisons, metrics.peakAuxSpace, input.length));
+    }
+
+    public static void onlineInsertion(int size, String distribution, Consumer<SortStats> results) {
+        int[] input = SortAnalysisDialog.generateDistribution(distribution, size, new Random());
+
+        OnlineSorter online = new OnlineSorter(OnlineSorter.DEFAULT_BUFFER);
+        online.insertAll(input);
+        OnlineSorter.Report report = online.getReport();
+        String name = String.format(Locale.US, "Online Sorter inserts [p50 %d ns, p99 %d ns, max %.1f us, %.2f M inserts/s, %d merges] (%s)",
+                report.percentileNanos(50), report.percentileNanos(99), report.maxInsertNanos / 1000.0,
+                report.insertsPerSecond() / 1e6, report.merges, distribution);
+        results.accept(new SortStats(name, report.insertNanos, 0, "O(log N) amortised", "O(N)",
+                0, report.elements + report.mergedElements, 0, 0, OnlineSorter.DEFAULT_BUFFER, size));
+
+        long startNanos = System.nanoTime();
+        int[] snapshot = online.toSortedArray();
+        long snapshotNanos = System.nanoTime() - startNanos;
+        results.accept(new SortStats("Online Sorter snapshot, merge " + online.runCount() + " runs (" + distribution + ")",
+                snapshotNanos, 0, "O(N log R)", "O(N)", 0, snapshot.length, 0, 0, snapshot.length, size));
+
+        reportPartial("Batch Radix Sort (Base 256)", "O(N)", "O(N)", input, distribution, results,
+                (a, m) -> SortingAlgorithms.radixSortLsd256(a, null, m));
+        reportPartial("Batch Quick Sort", "O(N log N)", "O(log N)", input, distribution, results,
+                (a, m) -> SortingAlgorithms.quickSort(a, null, m));
+    }
+
+    public static void boundedKeys(int size, String distribution, Consumer<SortStats> results) {
+        Set<String> distributions = new LinkedHashSet<>(Arrays.asList("Few Unique", distribution));
+        for (String dist : distributions) {
+            int[] input = SortAnalysisDialog.generateDistribution(dist, size, new Random());
+            reportPartial("Counting Sort", "O(N + K)", "O(K)", input, dist, results,
+                    (a, m) -> SortingAlgorithms.countingSort(a, null, m));
+            reportPartial("Bucket Sort", "O(N + K)", "O(N)", input, dist, results,
+                    (a, m) -> SortingAlgorithms.bucketSort(a, null, m));
+            reportPartial("Arrays.sort (dual-pivot quicksort)", "O(N log N)", "O(log N)", input, dist, results,
+                    (a, m) -> Arrays.sort(a));
+            reportPartial("Merge Sort", "O(N log N)", "O(N)", input, dist, results,
+                    (a, m) -> SortingAlgorithms.mergeSort(a, null, m));
+            reportPartial("Heap Sort", "O(N log N)", "O(1)", input, dist, results,
+                    (a, m) -> SortingAlgorithms.heapSort(a, null, m));
+        }
+    }
+
+    private static final int KERNEL_REPETITIONS = 5;
+
+    public static void kernelThroughput(int size, String distribution, Consumer<SortStats> results) {
+        int[] input = SortAnalysisDialog.generateDistribution(distribution, size, new Random());
+        int pivot = input[size / 2];
+        List<SortKernel> kernels = new ArrayList<>();
+        kernels.add(SortKernels.SCALAR);
+        if (SortKernels.VECTOR != null) kernels.add(SortKernels.VECTOR);
+
+        for (SortKernel kernel : kernels) {
+            String tag = " [" + kernel.name() + "]";
+            reportKernel("Partition Kernel" + tag, "O(N)", input, results,
+                    a -> kernel.partition(a, 0, a.length, pivot));
+            reportKernel("Histogram Kernel" + tag, "O(N)", input, results,
+                    a -> kernel.histogram(a, 0, a.length, 0, new int[256]));
+            reportKernel("Block Sort 8 Kernel" + tag, "O(N)", input, results,
+                    a -> kernel.sortBlocks(a, 0, a.length));
+            reportKernel("Kernel Quick Sort" + tag, "O(N log N)", input, results,
+                    a -> SortKernels.quickSort(a, kernel));
+        }
+        if (SortKernels.VECTOR == null) {
+            results.accept(new SortStats(SortKernels.VECTOR_STATUS, 0, 0, "-", "-", 0, 0, 0, 0, 0, size));
+        }
+    }
+
+    /** Best of {@link #KERNEL_REPETITIONS} runs on fresh copies, reported with its throughput. */
+    private static void reportKernel(String kernelName, String timeComplexity, int[] input,
+            Consumer<SortStats> results, Consumer<int[]> kernel) {
+        long bestNanos = Long.MAX_VALUE;
+        for (int rep = 0; rep < KERNEL_REPETITIONS; rep++) {
+            int[] copy = input.clone();
+            long startNanos = System.nanoTime();
+            kernel.accept(copy);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - startNanos);
+        }
+        double elementsPerSecond = input.length / (Math.max(1, bestNanos) / 1e9);
+        String name = String.format(Locale.US, "%s (%.1f M elements/s)", kernelName, elementsPerSecond / 1e6);
+        results.accept(new SortStats(name, bestNanos, 0, timeComplexity, "O(1)", 0, 0, 0, 0, 0, input.length));
+    }
 }
 
 /* ---------------------------- Comparison Frame ---------------------------- */
@@ -2143,17 +6293,23 @@ class TrackedArray {
     public int getVisualCompare(int i, int j, int codeLine) {
         metrics.comparisons++;
         metrics.arrayReads += 2;
+        if (metrics.cache != null) {
+            metrics.cache.access(i);
+            metrics.cache.access(j);
+        }
         if (ops != null) ops.add(Operation.compare(i, j, codeLine));
         return Integer.compare(a[i], a[j]);
     }
     
     public int get(int i) {
         metrics.arrayReads++;
+        if (metrics.cache != null) metrics.cache.access(i);
         return a[i];
     }
 
     public void setVisual(int i, int val, int codeLine) {
         metrics.arrayWrites++;
+        if (metrics.cache != null) metrics.cache.access(i);
         a[i] = val;
         if (ops != null) ops.add(Operation.overwrite(i, val, codeLine));
     }
@@ -2161,6 +6317,7 @@ class TrackedArray {
     // silent set for temp buffers
     public void set(int i, int val) {
         metrics.arrayWrites++;
+        if (metrics.cache != null) metrics.cache.access(i);
         a[i] = val;
     }
 
@@ -2168,6 +6325,13 @@ class TrackedArray {
         metrics.swaps++;
         metrics.arrayReads += 2;
         metrics.arrayWrites += 2;
+        if (metrics.cache != null) {
+            // Both loads, then both stores, as counted in reads and writes above.
+            metrics.cache.access(i);
+            metrics.cache.access(j);
+            metrics.cache.access(i);
+            metrics.cache.access(j);
+        }
         int tmp = a[i];
         a[i] = a[j];
         a[j] = tmp;
@@ -2180,10 +6344,33 @@ class TrackedArray {
         if (ops != null) ops.add(Operation.compare(i, j, codeLine));
     }
 
+    /** Passes through the condition a sort branches on after a comparison, feeding the branch model. */
+    public boolean branch(boolean outcome, int codeLine) {
+        if (metrics.branches != null) metrics.branches.record(codeLine, outcome);
+        return outcome;
+    }
+
     public void markFinal(int i) {
         if (ops != null) ops.add(Operation.markFinal(i));
     }
 
+    /** Reserves a batch marker; returns its position, or -1 when no trace is recorded. */
+    public int beginBatch() {
+        if (ops == null) return -1;
+        ops.add(Operation.batch(0));
+        return ops.size() - 1;
+    }
+
+    public void endBatch(int marker) {
+        if (marker < 0) return;
+        int size = ops.size() - marker - 1;
+        if (size == 0) {
+            ops.remove(marker);
+        } else {
+            ops.set(marker, Operation.batch(size));
+        }
+    }
+
     public void allocateAux(int size) {
         metrics.currentAuxSpace += size;
         if (metrics.currentAuxSpace > metrics.peakAuxSpace) {
@@ -2197,6 +6384,11 @@ class TrackedArray {
         if (ops != null) ops.add(Operation.auxWrite(i, val));
     }
 
+    /** Shows a value in the aux view without counting it as a write, for bookkeeping held outside the array. */
+    public void showAux(int i, int val) {
+        if (ops != null) ops.add(Operation.auxWrite(i, val));
+    }
+
     public void clearAux(int size) {
         metrics.currentAuxSpace -= size;
         if (ops != null) ops.add(Operation.auxClear());
@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * SortingVisualiserTest.java
+ * Plain checks for SortingVisualiser, no test framework needed.
+ *
+ * Compile:
+ * javac -encoding UTF-8 SortingVisualiser.java SortingVisualiserTest.java
+ * Run:
+ * java SortingVisualiserTest
+ * To check the Vector API kernel as well (JDK 16+):
+ * javac --add-modules jdk.incubator.vector -cp . VectorSortKernel.java
+ * java --add-modules jdk.incubator.vector SortingVisualiserTest
+ *
+ * Exits with status 1 on the first failed check.
+ */
+public class SortingVisualiserTest {
+    public static void main(String[] args) {
+        writeMinimalSelectionSortWritesAtMostN();
+        sortKernelsAgreeWithArraysSort();
+        System.out.println("All checks passed (" + SortKernels.VECTOR_STATUS + ").");
+    }
+
+    /** Selection only reads, so placing the permutation may write each slot at most once. */
+    static void writeMinimalSelectionSortWritesAtMostN() {
+        int n = 2000;
+        Random random = new Random(42);
+        int[] randomInput = new int[n];
+        for (int i = 0; i < n; i++) randomInput[i] = random.nextInt(n);
+        int[] sortedInput = randomInput.clone();
+        Arrays.sort(sortedInput);
+        int[] reversedInput = new int[n];
+        for (int i = 0; i < n; i++) reversedInput[i] = sortedInput[n - 1 - i];
+        int[] fewUniqueInput = new int[n];
+        for (int i = 0; i < n; i++) fewUniqueInput[i] = random.nextInt(4);
+
+        checkWriteMinimal("random", randomInput, n);
+        checkWriteMinimal("sorted", sortedInput, 0);
+        checkWriteMinimal("reversed", reversedInput, n);
+        checkWriteMinimal("few unique", fewUniqueInput, n);
+    }
+
+    /** Checks the scalar kernel, and the vector one when the JVM loaded it, against java.util. */
+    static void sortKernelsAgreeWithArraysSort() {
+        List<SortKernel> kernels = new ArrayList<>();
+        kernels.add(SortKernels.SCALAR);
+        if (SortKernels.VECTOR != null) kernels.add(SortKernels.VECTOR);
+        Random random = new Random(7);
+        for (int trial = 0; trial < 500; trial++) {
+            int n = trial < 100 ? trial : random.nextInt(5000);
+            int[] input = new int[n];
+            for (int i = 0; i < n; i++) input[i] = trial % 2 == 0 ? random.nextInt() : random.nextInt(5);
+            int[] expected = input.clone();
+            Arrays.sort(expected);
+            int pivot = n == 0 ? 0 : input[random.nextInt(n)];
+
+            for (SortKernel kernel : kernels) {
+                String label = kernel.name() + " n=" + n;
+                int[] partitioned = input.clone();
+                int split = kernel.partition(partitioned, 0, n, pivot);
+                for (int i = 0; i < n; i++) {
+                    check((i < split) == (partitioned[i] < pivot), label + ": partition misplaced index " + i);
+                }
+                Arrays.sort(partitioned);
+                check(Arrays.equals(partitioned, expected), label + ": partition lost values");
+
+                int[] count = new int[256];
+                int[] expectedCount = new int[256];
+                kernel.histogram(input, 0, n, 16, count);
+                for (int value : input) expectedCount[((value ^ Integer.MIN_VALUE) >>> 16) & 0xFF]++;
+                check(Arrays.equals(count, expectedCount), label + ": histogram differs");
+
+                int[] sorted = input.clone();
+                SortKernels.quickSort(sorted, kernel);
+                check(Arrays.equals(sorted, expected), label + ": quick sort differs from Arrays.sort");
+            }
+        }
+    }
+
+    private static void checkWriteMinimal(String label, int[] input, long maxWrites) {
+        int[] array = input.clone();
+        int[] expected = input.clone();
+        Arrays.sort(expected);
+        List<Operation> ops = new ArrayList<>();
+        SortMetrics metrics = new SortMetrics();
+        SortingAlgorithms.writeMinimalSelectionSort(array, ops, metrics);
+
+        check(Arrays.equals(array, expected), label + ": result is not sorted");
+        check(metrics.arrayWrites <= maxWrites,
+                label + ": " + metrics.arrayWrites + " writes, expected at most " + maxWrites);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.err.println("FAILED: " + message);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * VectorSortKernel.java
+ * Vector API (SIMD) kernels for SortingVisualiser's raw sorts, loaded reflectively by
+ * SortKernels. Kept out of SortingVisualiser.java so that file still builds on Java 8.
+ *
+ * Compile (JDK 16+, after SortingVisualiser.java):
+ * javac --add-modules jdk.incubator.vector -cp . VectorSortKernel.java
+ * Run with the module, otherwise the scalar kernel is used:
+ * java --add-modules jdk.incubator.vector SortingVisualiser
+ */
+class VectorSortKernel implements SortKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_256;
+    private static final int LANES = 8;
+
+    // Row mask of PACK holds the lanes set in mask, in order, followed by the others.
+    private static final int[] PACK = new int[(1 << LANES) * LANES];
+    private static final int[] PACK_COUNT = new int[1 << LANES];
+    private static final int[] LANE_BITS = {1, 2, 4, 8, 16, 32, 64, 128};
+    // BLOCK_LANES[e] gathers element e of eight consecutive blocks of eight, one block per lane.
+    private static final int[][] BLOCK_LANES = new int[8][LANES];
+
+    static {
+        for (int mask = 0; mask < PACK_COUNT.length; mask++) {
+            int k = mask * LANES;
+            for (int lane = 0; lane < LANES; lane++) if ((mask & (1 << lane)) != 0) PACK[k++] = lane;
+            for (int lane = 0; lane < LANES; lane++) if ((mask & (1 << lane)) == 0) PACK[k++] = lane;
+            PACK_COUNT[mask] = Integer.bitCount(mask);
+        }
+        for (int e = 0; e < 8; e++) {
+            for (int lane = 0; lane < LANES; lane++) BLOCK_LANES[e][lane] = lane * 8 + e;
+        }
+    }
+
+    VectorSortKernel() {
+        if (IntVector.SPECIES_PREFERRED.vectorBitSize() < SPECIES.vectorBitSize()) {
+            throw new UnsupportedOperationException("this CPU has no 256-bit integer vectors");
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector " + SPECIES.vectorBitSize() + "-bit";
+    }
+
+    /**
+     * In-place vector partition. The first and last vectors are held in registers, which
+     * opens a gap of one vector at each end; every vector read next is packed (below-pivot
+     * lanes first) and stored into both gaps, advancing each write index by its share. Reading
+     * from the side with less room keeps both gaps at least one vector wide.
+     */
+    @Override
+    public int partition(int[] a, int lo, int hi, int pivot) {
+        if (hi - lo < 2 * LANES) return SortKernels.SCALAR.partition(a, lo, hi, pivot);
+        IntVector first = IntVector.fromArray(SPECIES, a, lo);
+        IntVector last = IntVector.fromArray(SPECIES, a, hi - LANES);
+        int readLeft = lo + LANES, readRight = hi - LANES;
+        int writeLeft = lo, writeRight = hi;
+
+        while (readRight - readLeft >= LANES) {
+            IntVector v;
+            if (readLeft - writeLeft <= writeRight - readRight) {
+                v = IntVector.fromArray(SPECIES, a, readLeft);
+                readLeft += LANES;
+            } else {
+                readRight -= LANES;
+                v = IntVector.fromArray(SPECIES, a, readRight);
+            }
+            int below = storePacked(v, pivot, a, writeLeft, writeRight);
+            writeLeft += below;
+            writeRight -= LANES - below;
+        }
+
+        // Fewer than LANES values are left unread; once copied out, [writeLeft, writeRight) is all free.
+        int rest = readRight - readLeft;
+        int[] tail = new int[rest + LANES];
+        System.arraycopy(a, readLeft, tail, 0, rest);
+        last.intoArray(tail, rest);
+        int below = storePacked(first, pivot, a, writeLeft, writeRight);
+        writeLeft += below;
+        writeRight -= LANES - below;
+        for (int value : tail) {
+            if (value < pivot) {
+                a[writeLeft++] = value;
+            } else {
+                a[--writeRight] = value;
+            }
+        }
+        return writeLeft;
+    }
+
+    /** Stores v packed at both write indices; returns how many lanes were below the pivot. */
+    private static int storePacked(IntVector v, int pivot, int[] a, int writeLeft, int writeRight) {
+        VectorMask<Integer> below = v.compare(VectorOperators.LT, pivot);
+        // Mask bits by a lane-wise blend and add, which the JIT keeps in vector registers.
+        int mask = IntVector.zero(SPECIES).blend(IntVector.fromArray(SPECIES, LANE_BITS, 0), below)
+                .reduceLanes(VectorOperators.ADD);
+        IntVector packed = v.rearrange(IntVector.fromArray(SPECIES, PACK, mask * LANES).toShuffle());
+        packed.intoArray(a, writeLeft);          // below-pivot lanes land at [writeLeft, writeLeft + count)
+        packed.intoArray(a, writeRight - LANES); // the rest land at [writeRight - (LANES - count), writeRight)
+        return PACK_COUNT[mask];
+    }
+
+    /**
+     * Digits are extracted a vector at a time. A vector whose lanes share one digit, the
+     * usual case for the high bytes, is counted with a single add; the others are spread
+     * over four interleaved tables like the scalar kernel.
+     */
+    @Override
+    public void histogram(int[] a, int lo, int hi, int shift, int[] count) {
+        int[] c0 = new int[256], c1 = new int[256], c2 = new int[256], c3 = new int[256];
+        int[] digits = new int[LANES];
+        int i = lo;
+        for (; i + LANES <= hi; i += LANES) {
+            IntVector d = IntVector.fromArray(SPECIES, a, i)
+                    .lanewise(VectorOperators.XOR, Integer.MIN_VALUE)
+                    .lanewise(VectorOperators.LSHR, shift)
+                    .lanewise(VectorOperators.AND, 0xFF);
+            int d0 = d.lane(0);
+            if (d.compare(VectorOperators.EQ, d0).allTrue()) {
+                count[d0] += LANES;
+                continue;
+            }
+            d.intoArray(digits, 0);
+            c0[digits[0]]++;
+            c1[digits[1]]++;
+            c2[digits[2]]++;
+            c3[digits[3]]++;
+            c0[digits[4]]++;
+            c1[digits[5]]++;
+            c2[digits[6]]++;
+            c3[digits[7]]++;
+        }
+        for (; i < hi; i++) c0[((a[i] ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++;
+        for (int b = 0; b < 256; b++) count[b] += c0[b] + c1[b] + c2[b] + c3[b];
+    }
+
+    /**
+     * Sorts eight blocks at once: element e of every block is gathered into vector e, the
+     * network runs as lane-wise min/max on whole vectors, and the result is transposed back.
+     * Blocks past the last group of eight go to the scalar kernel.
+     */
+    @Override
+    public void sortBlocks(int[] a, int lo, int hi) {
+        int[] transposed = new int[8 * LANES];
+        int o = lo;
+        for (; o + 8 * LANES <= hi; o += 8 * LANES) {
+            IntVector v0 = IntVector.fromArray(SPECIES, a, o, BLOCK_LANES[0], 0);
+            IntVector v1 = IntVector.fromArray(SPECIES, a, o, BLOCK_LANES[1], 0);
+            IntVector v2 = IntVector.fromArray(SPECIES, a, o, BLOCK_LANES[2], 0);
+            IntVector v3 = IntVector.fromArray(SPECIES, a, o, BLOCK_LANES[3], 0);
+            IntVector v4 = IntVector.fromArray(SPECIES, a, o, BLOCK_LANES[4], 0);
+            IntVector v5 = IntVector.fromArray(SPECIES, a, o, BLOCK_LANES[5], 0);
+            IntVector v6 = IntVector.fromArray(SPECIES, a, o, BLOCK_LANES[6], 0);
+            IntVector v7 = IntVector.fromArray(SPECIES, a, o, BLOCK_LANES[7], 0);
+            IntVector t;
+            t = v0.min(v1); v1 = v0.max(v1); v0 = t;
+            t = v2.min(v3); v3 = v2.max(v3); v2 = t;
+            t = v4.min(v5); v5 = v4.max(v5); v4 = t;
+            t = v6.min(v7); v7 = v6.max(v7); v6 = t;
+            t = v0.min(v2); v2 = v0.max(v2); v0 = t;
+            t = v1.min(v3); v3 = v1.max(v3); v1 = t;
+            t = v4.min(v6); v6 = v4.max(v6); v4 = t;
+            t = v5.min(v7); v7 = v5.max(v7); v5 = t;
+            t = v1.min(v2); v2 = v1.max(v2); v1 = t;
+            t = v5.min(v6); v6 = v5.max(v6); v5 = t;
+            t = v0.min(v4); v4 = v0.max(v4); v0 = t;
+            t = v1.min(v5); v5 = v1.max(v5); v1 = t;
+            t = v2.min(v6); v6 = v2.max(v6); v2 = t;
+            t = v3.min(v7); v7 = v3.max(v7); v3 = t;
+            t = v2.min(v4); v4 = v2.max(v4); v2 = t;
+            t = v3.min(v5); v5 = v3.max(v5); v3 = t;
+            t = v1.min(v2); v2 = v1.max(v2); v1 = t;
+            t = v3.min(v4); v4 = v3.max(v4); v3 = t;
+            t = v5.min(v6); v6 = v5.max(v6); v5 = t;
+            v0.intoArray(transposed, 0);
+            v1.intoArray(transposed, 8);
+            v2.intoArray(transposed, 16);
+            v3.intoArray(transposed, 24);
+            v4.intoArray(transposed, 32);
+            v5.intoArray(transposed, 40);
+            v6.intoArray(transposed, 48);
+            v7.intoArray(transposed, 56);
+            for (int e = 0; e < 8; e++) {
+                for (int lane = 0; lane < LANES; lane++) a[o + lane * 8 + e] = transposed[e * 8 + lane];
+            }
+        }
+        SortKernels.SCALAR.sortBlocks(a, o, hi);
+    }
+}